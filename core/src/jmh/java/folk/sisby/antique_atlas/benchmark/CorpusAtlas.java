@@ -0,0 +1,105 @@
+package folk.sisby.antique_atlas.benchmark;
+
+import folk.sisby.antique_atlas.util.TerrainHistogram;
+import folk.sisby.antique_atlas.util.TileMap;
+import folk.sisby.antique_atlas.util.TileStore;
+import folk.sisby.antique_atlas.util.WorldTiles;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Loads a {@link SyntheticCorpus} through the same {@link WorldTiles} that {@code WorldAtlasData} loads a world from Surveyor with -
+ * queueing region bitsets, tiling chunks nearest-first in region batches, then laying structures and landmarks over the result.
+ * The event handlers themselves need a live world and loaded resources, so this only stands in for the classification and texture lookups.
+ * Providers are the corpus' global tile indices, with one texture per provider and elevation.
+ */
+public class CorpusAtlas {
+    private final SyntheticCorpus corpus;
+    private final WorldTiles worldTiles = new WorldTiles(SyntheticTiles.CONNECTIVITY, CorpusAtlas::getTexture);
+    private final int[] structureProviders = new int[SyntheticCorpus.STRUCTURE_TYPES];
+    private final Long2ObjectMap<SyntheticCorpus.Landmark> deathMarkers = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectMap<SyntheticCorpus.Landmark> pointMarkers = new Long2ObjectOpenHashMap<>();
+    private final SyntheticCorpus.Layer layer = new SyntheticCorpus.Layer();
+
+    public CorpusAtlas(SyntheticCorpus corpus) {
+        this.corpus = corpus;
+        // A few priority bands, so overlapping structures go through the same priority checks as real ones.
+        for (int type = 0; type < structureProviders.length; type++) {
+            structureProviders[type] = worldTiles.addStructureProvider(type % 4);
+        }
+    }
+
+    private static short getTexture(int provider, int x, int z, int elevation) {
+        return (short) (provider * TerrainHistogram.ROWS + (elevation == WorldTiles.NO_ELEVATION ? TerrainHistogram.NO_ELEVATION : elevation));
+    }
+
+    /**
+     * Loads everything, finishing the terrain queue like ticks would.
+     */
+    public static CorpusAtlas load(SyntheticCorpus corpus) {
+        CorpusAtlas atlas = new CorpusAtlas(corpus);
+        atlas.onLoad();
+        atlas.onStructuresAdded(corpus.getStructures());
+        atlas.onLandmarksAdded(corpus.getLandmarks());
+        atlas.worldTiles.poll((polled, batched) -> true, atlas::tileRegion);
+        return atlas;
+    }
+
+    public void onLoad() {
+        worldTiles.getPending().setFocus(0, 0, null);
+        for (SyntheticCorpus.Region region : corpus.getRegions()) {
+            worldTiles.queueRegion(region.regionX(), region.regionZ(), region.chunks(), null);
+        }
+    }
+
+    public void tileRegion(int regionX, int regionZ, BitSet chunks) {
+        SyntheticCorpus.Region region = corpus.getRegion(regionX, regionZ);
+        int stride = region.palette().stride();
+        for (int bit = chunks.nextSetBit(0); bit >= 0; bit = chunks.nextSetBit(bit + 1)) {
+            int index = TileStore.fromRegionBit(bit);
+            int x = regionX << TileStore.REGION_POWER | (index & TileStore.REGION_MASK);
+            int z = regionZ << TileStore.REGION_POWER | (index >> TileStore.REGION_POWER);
+            corpus.fill(x, z, layer);
+            int result = TerrainHistogram.surface(region.palette(), TerrainHistogram.EMPTY_TILE, true, SyntheticCorpus.TOP_Y, SyntheticCorpus.SEA_LEVEL, layer.exists, layer.depths, layer.waterDepths, layer.blocks, layer.biomes);
+            if (result == -1) continue;
+            int row = result / stride;
+            worldTiles.setTerrain(x, z, region.textures()[result] / TerrainHistogram.ROWS, row == TerrainHistogram.NO_ELEVATION ? WorldTiles.NO_ELEVATION : row);
+        }
+    }
+
+    public void onStructuresAdded(List<SyntheticCorpus.Structure> structures) {
+        for (SyntheticCorpus.Structure structure : structures) {
+            for (SyntheticCorpus.Piece piece : structure.pieces()) {
+                for (int z = piece.minZ(); z <= piece.maxZ(); z++) {
+                    for (int x = piece.minX(); x <= piece.maxX(); x++) {
+                        worldTiles.setStructure(x, z, structureProviders[structure.type()], structure.texture());
+                    }
+                }
+            }
+        }
+    }
+
+    public void onLandmarksAdded(List<SyntheticCorpus.Landmark> landmarks) {
+        for (SyntheticCorpus.Landmark landmark : landmarks) {
+            (landmark.death() ? deathMarkers : pointMarkers).put(packBlock(landmark.x(), landmark.y(), landmark.z()), landmark);
+        }
+    }
+
+    /**
+     * Packs a block position the way {@code BlockPos.asLong} does.
+     */
+    private static long packBlock(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+    }
+
+    public TileMap getTiles() {
+        return worldTiles.getTiles();
+    }
+
+    public int getMarkerCount() {
+        return deathMarkers.size() + pointMarkers.size();
+    }
+}
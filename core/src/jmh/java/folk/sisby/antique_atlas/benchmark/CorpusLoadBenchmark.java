@@ -0,0 +1,92 @@
+package folk.sisby.antique_atlas.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a whole synthetic world at scale - the time from Surveyor's world load to a finished map, and the heap the result keeps.
+ * Swept over explored chunk counts, so join and load time can be read against world size - both should grow linearly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class CorpusLoadBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int chunks;
+
+    @Param({"5000"})
+    public int structures;
+
+    @Param({"20000"})
+    public int landmarks;
+
+    private SyntheticCorpus corpus;
+
+    /**
+     * Heap still reachable after a load, on top of the corpus itself.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        public long retainedKilobytes;
+        private long baseline;
+        private CorpusAtlas atlas;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            baseline = usedHeap();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            retainedKilobytes = (usedHeap() - baseline) / 1024;
+            atlas = null;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        corpus = new SyntheticCorpus(16, chunks, structures, landmarks);
+    }
+
+    /**
+     * Only the world load event itself - queueing the explored chunks and laying out structures and landmarks, without tiling.
+     */
+    @Benchmark
+    public CorpusAtlas join() {
+        CorpusAtlas atlas = new CorpusAtlas(corpus);
+        atlas.onLoad();
+        atlas.onStructuresAdded(corpus.getStructures());
+        atlas.onLandmarksAdded(corpus.getLandmarks());
+        return atlas;
+    }
+
+    @Benchmark
+    public CorpusAtlas load(Retained retained) {
+        retained.atlas = CorpusAtlas.load(corpus);
+        return retained.atlas;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,65 @@
+package folk.sisby.antique_atlas.benchmark;
+
+import folk.sisby.antique_atlas.gui.tiles.ConnectivityMatrix;
+import folk.sisby.antique_atlas.gui.tiles.SubTile;
+import folk.sisby.antique_atlas.gui.tiles.SubTileQuartet;
+import folk.sisby.antique_atlas.gui.tiles.TileRenderIterator;
+import folk.sisby.antique_atlas.util.Rect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of map stitching over a loaded synthetic world, with the viewport centered on spawn and zoomed out by {@code step}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class CorpusRenderBenchmark {
+    private static final int VIEWPORT_TILES = 128;
+
+    @Param({"1000000"})
+    public int chunks;
+
+    @Param({"1", "4", "16"})
+    public int step;
+
+    private SyntheticTiles tiles;
+    private ConnectivityMatrix connectivity;
+    private Rect viewport;
+
+    @Setup
+    public void setup() {
+        tiles = new SyntheticTiles(CorpusAtlas.load(new SyntheticCorpus(16, chunks, chunks / 200, chunks / 50)).getTiles());
+        connectivity = ConnectivityMatrix.of(tiles, SyntheticCorpus.TERRAIN_TEXTURES + SyntheticCorpus.STRUCTURE_TYPES);
+        int half = VIEWPORT_TILES * step / 2;
+        viewport = new Rect(-half, -half, half - 1, half - 1);
+    }
+
+    @Benchmark
+    public void sweep(Blackhole blackhole) {
+        TileRenderIterator iterator = new TileRenderIterator(tiles, connectivity);
+        iterator.setScope(viewport);
+        iterator.setStep(step);
+        for (SubTileQuartet quartet : iterator) {
+            for (SubTile subtile : quartet) {
+                blackhole.consume(subtile.tile);
+                blackhole.consume(subtile.shape);
+            }
+        }
+    }
+}
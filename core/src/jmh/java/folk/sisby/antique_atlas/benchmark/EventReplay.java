@@ -0,0 +1,68 @@
+package folk.sisby.antique_atlas.benchmark;
+
+import folk.sisby.antique_atlas.util.EventLog;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Replays an {@link EventLog} recorded in game at full speed, without Minecraft, then reports throughput, per-event latency and peak heap.
+ * Latency covers reading each event from the log as well as applying it, since large events are streamed rather than read up front.
+ * Run with {@code ./gradlew replay -Pfile=<recording>}.
+ */
+public class EventReplay {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: EventReplay <recording.aaevents>");
+            System.exit(2);
+        }
+        Path path = Path.of(args[0]);
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+        LongArrayList[] latencies = new LongArrayList[EventLog.EVENT_NAMES.length];
+        for (int i = 0; i < latencies.length; i++) latencies[i] = new LongArrayList();
+        long recordedNanos = 0;
+        int events = 0;
+
+        long start = System.nanoTime();
+        ReplayAtlas atlas;
+        EventLog.Header header;
+        try (EventLog.Reader reader = new EventLog.Reader(Files.newInputStream(path))) {
+            header = reader.getHeader();
+            atlas = new ReplayAtlas(header);
+            while (reader.next()) {
+                if (events > 0) recordedNanos += reader.getNanos();
+                long eventStart = System.nanoTime();
+                atlas.begin(reader.getType());
+                reader.read(atlas);
+                latencies[reader.getType()].add(System.nanoTime() - eventStart);
+                events++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+        }
+        double seconds = elapsed / 1e9;
+        System.out.printf("Replayed %s (%s): %d events recorded over %.1fs, replayed in %.1fs%n", path.getFileName(), header.dimension(), events, recordedNanos / 1e9, seconds);
+        System.out.printf("  %d chunks tiled - %.0f chunks/s, %.0f events/s%n", atlas.getChunksTiled(), atlas.getChunksTiled() / seconds, events / seconds);
+        for (int type = 0; type < latencies.length; type++) {
+            long[] sorted = latencies[type].toLongArray();
+            if (sorted.length == 0) continue;
+            Arrays.sort(sorted);
+            System.out.printf("  %-16s %6d events - p50 %.3fms, p99 %.3fms, max %.3fms%n", EventLog.EVENT_NAMES[type], sorted.length, percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+        }
+        System.out.printf("  Peak heap %dMB - %d tiles, %d landmarks%n", peakHeap / (1024 * 1024), atlas.getTiles().getTerrain().size(), atlas.getLandmarkCount());
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
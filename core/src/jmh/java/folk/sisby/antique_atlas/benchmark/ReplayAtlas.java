@@ -0,0 +1,143 @@
+package folk.sisby.antique_atlas.benchmark;
+
+import folk.sisby.antique_atlas.util.EventLog;
+import folk.sisby.antique_atlas.util.TerrainHistogram;
+import folk.sisby.antique_atlas.util.TileMap;
+import folk.sisby.antique_atlas.util.TileStore;
+import folk.sisby.antique_atlas.util.WorldTiles;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies an {@link EventLog}'s events the way {@code WorldAtlasData} applies Surveyor's, through the same {@link WorldTiles}.
+ * Terrain goes through the pending queue one region at a time and is tiled straight away, as the log only holds a region's layers while it's being read.
+ * Providers are the logged biome and custom tile names, and structure providers their priorities. Textures are numbered in the order they're first seen.
+ */
+public class ReplayAtlas implements EventLog.Listener {
+    private final EventLog.Header header;
+    private final WorldTiles worldTiles = new WorldTiles(null, this::getTexture);
+    private final Object2IntMap<String> textureIds = new Object2IntOpenHashMap<>();
+    private final Object2IntMap<String> providerIds = new Object2IntOpenHashMap<>();
+    private final IntArrayList providerTextures = new IntArrayList();
+    private final Int2IntOpenHashMap structureProviders = new Int2IntOpenHashMap();
+    private final Map<String, LongSet> landmarks = new HashMap<>();
+    private final BitSet regionBits = new BitSet(TileStore.PAGE_SIZE);
+    private final EventLog.Chunk[] regionChunks = new EventLog.Chunk[TileStore.PAGE_SIZE];
+    private EventLog.Region region;
+    private int[] regionProviders = new int[0];
+    private boolean removing = false;
+    private long chunksTiled = 0;
+
+    public ReplayAtlas(EventLog.Header header) {
+        this.header = header;
+    }
+
+    /**
+     * Starts applying an event of the given type.
+     */
+    public void begin(byte type) {
+        removing = type == EventLog.LANDMARKS_REMOVED;
+    }
+
+    private short textureId(String texture) {
+        int id = textureIds.getOrDefault(texture, -1);
+        if (id == -1) {
+            id = textureIds.size();
+            textureIds.put(texture, id);
+        }
+        return (short) id;
+    }
+
+    /**
+     * @return the provider's index, numbering its texture for each elevation when it's first seen.
+     */
+    private int providerId(String provider) {
+        int id = providerIds.getOrDefault(provider, -1);
+        if (id == -1) {
+            id = providerIds.size();
+            providerIds.put(provider, id);
+            for (int row = 0; row < TerrainHistogram.ROWS; row++) {
+                providerTextures.add(textureId(provider + "/" + row));
+            }
+        }
+        return id;
+    }
+
+    private short getTexture(int provider, int x, int z, int elevation) {
+        return (short) providerTextures.getInt(provider * TerrainHistogram.ROWS + (elevation == WorldTiles.NO_ELEVATION ? TerrainHistogram.NO_ELEVATION : elevation));
+    }
+
+    @Override
+    public void region(EventLog.Region region) {
+        if (region.chunks().isEmpty()) return;
+        this.region = region;
+        int stride = region.palette().stride();
+        if (regionProviders.length < stride) regionProviders = new int[stride];
+        for (int tile = 0; tile < stride; tile++) {
+            regionProviders[tile] = providerId(tile < region.biomeIds().length ? region.biomeIds()[tile] : "custom/" + (tile - region.biomeIds().length));
+        }
+
+        regionBits.clear();
+        for (EventLog.Chunk chunk : region.chunks()) {
+            regionBits.set(TileStore.regionBit(chunk.x(), chunk.z()));
+            regionChunks[TileStore.index(chunk.x(), chunk.z())] = chunk;
+        }
+        worldTiles.queueRegion(region.regionX(), region.regionZ(), regionBits, null);
+        worldTiles.poll((polled, batched) -> true, this::tileRegion);
+    }
+
+    private void tileRegion(int regionX, int regionZ, BitSet chunks) {
+        int stride = region.palette().stride();
+        for (int bit = chunks.nextSetBit(0); bit >= 0; bit = chunks.nextSetBit(bit + 1)) {
+            int index = TileStore.fromRegionBit(bit);
+            int result = TerrainHistogram.classify(EventLog.LAYERS, regionChunks[index], region.palette(), header.defaultTile(), header.checkRavines(), header.nether(), header.topY(), header.seaLevel());
+            chunksTiled++;
+            if (result == -1) continue;
+            int row = result / stride;
+            worldTiles.setTerrain(regionX << TileStore.REGION_POWER | (index & TileStore.REGION_MASK), regionZ << TileStore.REGION_POWER | (index >> TileStore.REGION_POWER), regionProviders[result % stride], row == TerrainHistogram.NO_ELEVATION ? WorldTiles.NO_ELEVATION : row);
+        }
+    }
+
+    @Override
+    public void structure(EventLog.Structure structure) {
+        for (EventLog.StructureTile tile : structure.tiles()) {
+            int provider = structureProviders.getOrDefault(tile.priority(), -1);
+            if (provider == -1) {
+                provider = worldTiles.addStructureProvider(tile.priority());
+                structureProviders.put(tile.priority(), provider);
+            }
+            worldTiles.setStructure(tile.x(), tile.z(), provider, textureId(tile.texture()));
+        }
+    }
+
+    @Override
+    public void landmark(EventLog.Landmark landmark) {
+        long pos = ((long) landmark.x() & 0x3FFFFFF) << 38 | ((long) landmark.z() & 0x3FFFFFF) << 12 | (landmark.y() & 0xFFF);
+        if (removing) {
+            LongSet positions = landmarks.get(landmark.type());
+            if (positions != null && positions.remove(pos) && positions.isEmpty()) landmarks.remove(landmark.type());
+        } else {
+            landmarks.computeIfAbsent(landmark.type(), k -> new LongOpenHashSet()).add(pos);
+        }
+    }
+
+    public TileMap getTiles() {
+        return worldTiles.getTiles();
+    }
+
+    public long getChunksTiled() {
+        return chunksTiled;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.values().stream().mapToInt(LongSet::size).sum();
+    }
+}
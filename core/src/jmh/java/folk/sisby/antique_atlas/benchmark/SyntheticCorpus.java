@@ -0,0 +1,234 @@
+package folk.sisby.antique_atlas.benchmark;
+
+import folk.sisby.antique_atlas.util.MathUtil;
+import folk.sisby.antique_atlas.util.TerrainHistogram;
+import folk.sisby.antique_atlas.util.TileStore;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A deterministic explored world, shaped like what Surveyor hands to {@code WorldAtlasData#onLoad}.
+ * Terrain is a ragged disc of explored chunks as region bitsets with per-region palettes - chunk layers are generated on demand,
+ * so millions of chunks don't have to be held in memory. Structures are jigsaw-style starts with pieces spreading over nearby chunks,
+ * and landmarks are a mix of death and point markers scattered over the explored area.
+ */
+public class SyntheticCorpus {
+    public static final int COLUMNS = 256;
+    public static final int TOP_Y = 320;
+    public static final int SEA_LEVEL = 63;
+    public static final int BIOMES = 16;
+    public static final int STRUCTURE_TYPES = 32;
+    public static final int MAX_PIECES = 12;
+    /**
+     * Terrain textures are one per biome or custom tile per histogram row - structures are textured after them.
+     */
+    public static final int TERRAIN_TEXTURES = (BIOMES + TerrainHistogram.CUSTOM_TILES) * TerrainHistogram.ROWS;
+
+    private static final byte[] BLOCK_KINDS = {TerrainHistogram.OTHER_BLOCK, TerrainHistogram.OTHER_BLOCK, TerrainHistogram.OTHER_BLOCK, TerrainHistogram.OTHER_BLOCK, TerrainHistogram.OTHER_BLOCK, TerrainHistogram.OTHER_BLOCK, TerrainHistogram.ICE_BLOCK, TerrainHistogram.LAVA_BLOCK};
+    private static final int ICE = 6;
+    private static final int LAVA = 7;
+    private static final int HEIGHT_SALT = 1;
+    private static final int BIOME_SALT = 2;
+    private static final int EDGE_SALT = 3;
+    private static final int CHUNK_SALT = 4;
+
+    /**
+     * One 32x32 chunk region.
+     *
+     * @param chunks   the explored chunks, indexed by {@link TileStore#regionBit(int, int)} like Surveyor's region bitsets.
+     * @param biomes   the palette index of each biome, which Surveyor orders per region.
+     * @param textures the texture for each {@link TerrainHistogram} result.
+     */
+    public record Region(int regionX, int regionZ, BitSet chunks, TerrainHistogram.Palette palette, int[] biomes, short[] textures) {
+    }
+
+    /**
+     * A structure piece's bounds, in chunks.
+     */
+    public record Piece(int minX, int minZ, int maxX, int maxZ) {
+    }
+
+    public record Structure(int type, int x, int z, Piece[] pieces) {
+        public short texture() {
+            return (short) (TERRAIN_TEXTURES + type);
+        }
+    }
+
+    public record Landmark(boolean death, int x, int y, int z, int color) {
+    }
+
+    /**
+     * A reusable single-layer chunk summary, shaped like Surveyor's {@code LayerSummary.Raw}.
+     */
+    public static class Layer {
+        public final BitSet exists = new BitSet(COLUMNS);
+        public final int[] depths = new int[COLUMNS];
+        public final int[] waterDepths = new int[COLUMNS];
+        public final int[] blocks = new int[COLUMNS];
+        public final int[] biomes = new int[COLUMNS];
+    }
+
+    private final long seed;
+    private final Long2ObjectMap<Region> regions = new Long2ObjectOpenHashMap<>();
+    private final List<Structure> structures = new ArrayList<>();
+    private final List<Landmark> landmarks = new ArrayList<>();
+    private int chunkCount = 0;
+
+    /**
+     * @param chunks roughly how many chunks should be explored.
+     */
+    public SyntheticCorpus(long seed, int chunks, int structureCount, int landmarkCount) {
+        if (chunks <= 0) throw new IllegalArgumentException("A corpus needs at least one chunk, got " + chunks);
+        this.seed = seed;
+        double radius = Math.sqrt(chunks / Math.PI);
+        int bound = (int) Math.ceil(radius * 1.25);
+        long[] explored = new long[chunks];
+        int exploredCount = 0;
+        for (int z = -bound; z <= bound; z++) {
+            for (int x = -bound; x <= bound; x++) {
+                double edge = radius * (0.8 + 0.4 * noise(x, z, 32, EDGE_SALT));
+                if ((double) x * x + (double) z * z > edge * edge) continue;
+                if ((hash(x, z, CHUNK_SALT) & 31) == 0) continue; // Unexplored gaps
+                long key = MathUtil.packXZ(x >> TileStore.REGION_POWER, z >> TileStore.REGION_POWER);
+                Region region = regions.get(key);
+                if (region == null) {
+                    region = region(x >> TileStore.REGION_POWER, z >> TileStore.REGION_POWER);
+                    regions.put(key, region);
+                }
+                region.chunks().set(TileStore.regionBit(x, z));
+                if (exploredCount < explored.length) explored[exploredCount++] = MathUtil.packXZ(x, z);
+                chunkCount++;
+            }
+        }
+
+        // Tiny corpora can land entirely in gaps - there's nowhere to place anything then.
+        if (exploredCount == 0) return;
+        Random random = new Random(seed);
+        for (int i = 0; i < structureCount; i++) {
+            long start = explored[random.nextInt(exploredCount)];
+            int x = MathUtil.unpackX(start);
+            int z = MathUtil.unpackZ(start);
+            Piece[] pieces = new Piece[1 + random.nextInt(MAX_PIECES)];
+            pieces[0] = new Piece(x, z, x + random.nextInt(2), z + random.nextInt(2));
+            for (int p = 1; p < pieces.length; p++) { // Jigsaw pieces branch off earlier ones
+                Piece parent = pieces[random.nextInt(p)];
+                int pieceX = parent.minX() + random.nextInt(3) - 1;
+                int pieceZ = parent.minZ() + random.nextInt(3) - 1;
+                pieces[p] = new Piece(pieceX, pieceZ, pieceX + (random.nextInt(4) == 0 ? 1 : 0), pieceZ + (random.nextInt(4) == 0 ? 1 : 0));
+            }
+            structures.add(new Structure(random.nextInt(STRUCTURE_TYPES), x, z, pieces));
+        }
+        for (int i = 0; i < landmarkCount; i++) {
+            long chunk = explored[random.nextInt(exploredCount)];
+            int x = MathUtil.unpackX(chunk) << 4 | random.nextInt(16);
+            int z = MathUtil.unpackZ(chunk) << 4 | random.nextInt(16);
+            landmarks.add(new Landmark(random.nextInt(5) == 0, x, SEA_LEVEL + random.nextInt(64), z, random.nextInt(16)));
+        }
+    }
+
+    private Region region(int regionX, int regionZ) {
+        // Surveyor orders each region's palette by first appearance - shuffle it so regions disagree.
+        Random random = new Random(hash(regionX, regionZ, BIOME_SALT));
+        int[] biomes = new int[BIOMES];
+        int[] order = new int[BIOMES];
+        for (int i = 0; i < BIOMES; i++) order[i] = i;
+        for (int i = BIOMES - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        int[] priorities = new int[BIOMES];
+        boolean[] swamps = new boolean[BIOMES];
+        for (int local = 0; local < BIOMES; local++) {
+            int biome = order[local];
+            biomes[biome] = local;
+            priorities[local] = biome % 7 == 0 ? TerrainHistogram.BEACH_PRIORITY : 1;
+            swamps[local] = biome % 5 == 0;
+        }
+        TerrainHistogram.Palette palette = new TerrainHistogram.Palette(priorities, swamps, BLOCK_KINDS);
+        int stride = palette.stride();
+        short[] textures = new short[TerrainHistogram.ROWS * stride];
+        for (int result = 0; result < textures.length; result++) {
+            int tile = result % stride;
+            int global = tile < BIOMES ? order[tile] : tile;
+            textures[result] = (short) (global * TerrainHistogram.ROWS + result / stride);
+        }
+        return new Region(regionX, regionZ, new BitSet(TileStore.PAGE_SIZE), palette, biomes, textures);
+    }
+
+    /**
+     * Fills a layer with the chunk's surface. Neighbouring chunks share heights and biomes, so tiles form blobs.
+     */
+    public void fill(int x, int z, Layer layer) {
+        Region region = getRegion(x >> TileStore.REGION_POWER, z >> TileStore.REGION_POWER);
+        int base = SEA_LEVEL - 24 + (int) (100 * noise(x, z, 24, HEIGHT_SALT));
+        int slopeX = (int) (100 * noise(x + 1, z, 24, HEIGHT_SALT)) + SEA_LEVEL - 24 - base;
+        int slopeZ = (int) (100 * noise(x, z + 1, 24, HEIGHT_SALT)) + SEA_LEVEL - 24 - base;
+        int biomeA = region.biomes()[(int) (noise(x, z, 12, BIOME_SALT) * BIOMES)];
+        int biomeB = region.biomes()[(int) (noise(x + 3, z + 3, 12, BIOME_SALT) * BIOMES)];
+        long random = hash(x, z, CHUNK_SALT);
+        layer.exists.clear();
+        for (int i = 0; i < COLUMNS; i++) {
+            random = random * 6364136223846793005L + 1442695040888963407L;
+            int bits = (int) (random >>> 33);
+            int columnX = i & 15;
+            int columnZ = i >> 4;
+            if ((bits & 63) != 0) layer.exists.set(i);
+            int floor = base + (slopeX * columnX + slopeZ * columnZ) / 16 + (bits >> 6 & 3);
+            layer.depths[i] = TOP_Y - floor;
+            layer.waterDepths[i] = Math.max(0, SEA_LEVEL - floor);
+            layer.blocks[i] = (bits >> 8 & 31) == 0 ? (floor < SEA_LEVEL ? ICE : LAVA) : (bits >> 13 & 7) % ICE;
+            layer.biomes[i] = columnX + columnZ < 16 ? biomeA : biomeB;
+        }
+    }
+
+    public Region getRegion(int regionX, int regionZ) {
+        return regions.get(MathUtil.packXZ(regionX, regionZ));
+    }
+
+    public Iterable<Region> getRegions() {
+        return regions.values();
+    }
+
+    public List<Structure> getStructures() {
+        return structures;
+    }
+
+    public List<Landmark> getLandmarks() {
+        return landmarks;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    private long hash(int x, int z, int salt) {
+        long h = seed ^ x * 0x9E3779B97F4A7C15L ^ z * 0xC2B2AE3D27D4EB4FL ^ salt * 0x165667B19E3779F9L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private double unit(int x, int z, int salt) {
+        return (hash(x, z, salt) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * @return smooth value noise in [0, 1), varying over cells of {@code cell} chunks.
+     */
+    private double noise(int x, int z, int cell, int salt) {
+        int cellX = Math.floorDiv(x, cell);
+        int cellZ = Math.floorDiv(z, cell);
+        double fx = (double) Math.floorMod(x, cell) / cell;
+        double fz = (double) Math.floorMod(z, cell) / cell;
+        double top = unit(cellX, cellZ, salt) * (1 - fx) + unit(cellX + 1, cellZ, salt) * fx;
+        double bottom = unit(cellX, cellZ + 1, salt) * (1 - fx) + unit(cellX + 1, cellZ + 1, salt) * fx;
+        return top * (1 - fz) + bottom * fz;
+    }
+}
@@ -0,0 +1,110 @@
+package folk.sisby.antique_atlas.benchmark;
+
+import folk.sisby.antique_atlas.gui.tiles.TileConnectivity;
+import folk.sisby.antique_atlas.gui.tiles.TileSource;
+import folk.sisby.antique_atlas.util.Rect;
+import folk.sisby.antique_atlas.util.TileMap;
+
+import java.util.Random;
+
+/**
+ * A square of explored chunks in a {@link TileMap} - blobby terrain textures with scattered structure textures on top.
+ * Textures stitch to themselves and to the others in their group of four.
+ */
+public class SyntheticTiles implements TileSource, TileConnectivity {
+    public static final int TEXTURES = 64;
+    private static final int GROUP = 4;
+
+    public static final TileConnectivity CONNECTIVITY = new TileConnectivity() {
+        @Override
+        public boolean tiles(short tile, short to) {
+            return tile / GROUP == to / GROUP;
+        }
+
+        @Override
+        public boolean tilesHorizontally(short tile, short to) {
+            return tile == to || tiles(tile, to) && (tile & 1) == 0;
+        }
+
+        @Override
+        public boolean tilesVertically(short tile, short to) {
+            return tile == to || tiles(tile, to) && (tile & 1) == 1;
+        }
+    };
+
+    private final TileMap tiles;
+
+    /**
+     * Wraps already loaded tiles, e.g. from a {@link SyntheticCorpus}.
+     */
+    public SyntheticTiles(TileMap tiles) {
+        this.tiles = tiles;
+    }
+
+    /**
+     * @param cacheShapes whether the tiles cache their stitched shapes, as the game's do.
+     */
+    public SyntheticTiles(int size, long seed, boolean cacheShapes) {
+        this(new TileMap(cacheShapes ? CONNECTIVITY : null));
+        Random random = new Random(seed);
+        int cells = Math.max(1, size / 12);
+        short[] cellTextures = new short[cells * cells];
+        for (int i = 0; i < cellTextures.length; i++) {
+            cellTextures[i] = (short) random.nextInt(TEXTURES);
+        }
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                // Jitter cell edges so blobs aren't perfect squares.
+                int cellX = Math.min(cells - 1, Math.max(0, (x + random.nextInt(5) - 2) * cells / size));
+                int cellZ = Math.min(cells - 1, Math.max(0, (z + random.nextInt(5) - 2) * cells / size));
+                tiles.setTerrain(x, z, cellTextures[cellZ * cells + cellX]);
+                if (random.nextInt(200) == 0) tiles.setStructure(x, z, (short) random.nextInt(TEXTURES));
+            }
+        }
+    }
+
+    @Override
+    public Rect getScope() {
+        return tiles.getScope();
+    }
+
+    @Override
+    public short getTileId(int x, int z, int step) {
+        return tiles.getTileId(x, z, step);
+    }
+
+    @Override
+    public short getShapes(int x, int z, int step) {
+        return tiles.getShapes(x, z, step);
+    }
+
+    @Override
+    public long getRevision(int regionX, int regionZ, int step) {
+        return tiles.getRevision(regionX, regionZ, step);
+    }
+
+    @Override
+    public void getTileIds(int x, int z, int width, int height, int step, short[] out) {
+        tiles.getTileIds(x, z, width, height, step, out);
+    }
+
+    @Override
+    public void getShapes(int x, int z, int width, int height, int step, short[] tileIds, short[] out) {
+        tiles.getShapes(x, z, width, height, step, tileIds, out);
+    }
+
+    @Override
+    public boolean tiles(short tile, short to) {
+        return CONNECTIVITY.tiles(tile, to);
+    }
+
+    @Override
+    public boolean tilesHorizontally(short tile, short to) {
+        return CONNECTIVITY.tilesHorizontally(tile, to);
+    }
+
+    @Override
+    public boolean tilesVertically(short tile, short to) {
+        return CONNECTIVITY.tilesVertically(tile, to);
+    }
+}
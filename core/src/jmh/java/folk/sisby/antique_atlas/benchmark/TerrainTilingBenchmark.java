@@ -0,0 +1,101 @@
+package folk.sisby.antique_atlas.benchmark;
+
+import folk.sisby.antique_atlas.util.TerrainHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifies synthetic single-layer summaries the way {@code TerrainTiling} does for each dimension.
+ * Each invocation tiles every chunk once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TerrainTilingBenchmark {
+    private static final int COLUMNS = 256;
+    private static final int TOP_Y = 320;
+    private static final int SEA_LEVEL = 63;
+    private static final int NETHER_TOP_Y = 256;
+
+    @Param({"1024"})
+    public int chunks;
+
+    @Param({"16"})
+    public int biomes;
+
+    private TerrainHistogram.Palette palette;
+    private BitSet[] exists;
+    private int[][] depths;
+    private int[][] waterDepths;
+    private int[][] blocks;
+    private int[][] columnBiomes;
+    private int[][] netherDepths;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(16);
+        int[] priorities = new int[biomes];
+        boolean[] swamps = new boolean[biomes];
+        for (int i = 0; i < biomes; i++) {
+            priorities[i] = i % 7 == 0 ? TerrainHistogram.BEACH_PRIORITY : 1;
+            swamps[i] = i % 5 == 0;
+        }
+        byte[] blockKinds = {TerrainHistogram.OTHER_BLOCK, TerrainHistogram.OTHER_BLOCK, TerrainHistogram.OTHER_BLOCK, TerrainHistogram.ICE_BLOCK, TerrainHistogram.LAVA_BLOCK};
+        palette = new TerrainHistogram.Palette(priorities, swamps, blockKinds);
+
+        exists = new BitSet[chunks];
+        depths = new int[chunks][COLUMNS];
+        waterDepths = new int[chunks][COLUMNS];
+        blocks = new int[chunks][COLUMNS];
+        columnBiomes = new int[chunks][COLUMNS];
+        netherDepths = new int[chunks][COLUMNS];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            exists[chunk] = new BitSet(COLUMNS);
+            int base = SEA_LEVEL - 20 + random.nextInt(90);
+            int biomeA = random.nextInt(biomes);
+            int biomeB = random.nextInt(biomes);
+            for (int i = 0; i < COLUMNS; i++) {
+                if (random.nextInt(50) != 0) exists[chunk].set(i);
+                int floor = base + ((i & 15) + (i >> 4)) / 4 + random.nextInt(3);
+                depths[chunk][i] = TOP_Y - floor;
+                waterDepths[chunk][i] = Math.max(0, SEA_LEVEL - floor);
+                blocks[chunk][i] = random.nextInt(20) == 0 ? 3 + random.nextInt(2) : random.nextInt(3);
+                columnBiomes[chunk][i] = (i & 15) < 8 ? biomeA : biomeB;
+                int netherFloor = random.nextInt(4) == 0 ? 31 : 20 + random.nextInt(30);
+                netherDepths[chunk][i] = NETHER_TOP_Y - netherFloor;
+            }
+        }
+    }
+
+    @Benchmark
+    public void terrainToTile(Blackhole blackhole) {
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            blackhole.consume(TerrainHistogram.surface(palette, TerrainHistogram.EMPTY_TILE, true, TOP_Y, SEA_LEVEL, exists[chunk], depths[chunk], waterDepths[chunk], blocks[chunk], columnBiomes[chunk]));
+        }
+    }
+
+    @Benchmark
+    public void terrainToTileNether(Blackhole blackhole) {
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int[] fullBiomes = TerrainHistogram.floorNeedsBiomes(NETHER_TOP_Y - 31, exists[chunk], netherDepths[chunk]) ? columnBiomes[chunk] : null;
+            blackhole.consume(TerrainHistogram.floor(palette, NETHER_TOP_Y - 31, exists[chunk], netherDepths[chunk], blocks[chunk], fullBiomes));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package folk.sisby.antique_atlas.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tile lookups through {@link folk.sisby.antique_atlas.util.TileMap}, as {@code WorldAtlasData#getTileId} does,
+ * over a square of explored chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TileLookupBenchmark {
+    private static final int LOOKUPS = 4096;
+    /**
+     * Roughly a fullscreen 1440p map at the smallest tile size, with its margin.
+     */
+    private static final int WINDOW_WIDTH = 164;
+    private static final int WINDOW_HEIGHT = 94;
+
+    @Param({"1024"})
+    public int size;
+
+    @Param({"1", "8"})
+    public int step;
+
+    private SyntheticTiles tiles;
+    private int[] xs;
+    private int[] zs;
+    private final short[] window = new short[WINDOW_WIDTH * WINDOW_HEIGHT];
+
+    @Setup
+    public void setup() {
+        tiles = new SyntheticTiles(size, 16, false);
+        Random random = new Random(16);
+        xs = new int[LOOKUPS];
+        zs = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            xs[i] = random.nextInt(size);
+            zs[i] = random.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    public int random() {
+        int sum = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            sum += tiles.getTileId(xs[i], zs[i], step);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int row() {
+        int sum = 0;
+        int z = size / 2;
+        for (int x = 0; x < size; x += step) {
+            sum += tiles.getTileId(x, z, step);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public short[] window() {
+        tiles.getTileIds(0, 0, WINDOW_WIDTH, WINDOW_HEIGHT, step, window);
+        return window;
+    }
+
+    @Benchmark
+    public short[] windowByTile() {
+        for (int row = 0; row < WINDOW_HEIGHT; row++) {
+            for (int column = 0; column < WINDOW_WIDTH; column++) {
+                window[row * WINDOW_WIDTH + column] = tiles.getTileId(column * step, row * step, step);
+            }
+        }
+        return window;
+    }
+}
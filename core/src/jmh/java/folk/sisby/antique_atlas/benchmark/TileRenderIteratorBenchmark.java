@@ -0,0 +1,65 @@
+package folk.sisby.antique_atlas.benchmark;
+
+import folk.sisby.antique_atlas.gui.tiles.ConnectivityMatrix;
+import folk.sisby.antique_atlas.gui.tiles.SubTile;
+import folk.sisby.antique_atlas.gui.tiles.SubTileQuartet;
+import folk.sisby.antique_atlas.gui.tiles.TileRenderIterator;
+import folk.sisby.antique_atlas.util.Rect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full sweep over a 256x256 chunk viewport - one frame's worth of map stitching.
+ * Cached shapes are solved on the first sweep and only read after that, like on a static map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TileRenderIteratorBenchmark {
+    private static final int VIEWPORT = 256;
+
+    @Param({"1", "4", "16"})
+    public int step;
+
+    @Param({"false", "true"})
+    public boolean cachedShapes;
+
+    private SyntheticTiles tiles;
+    private ConnectivityMatrix connectivity;
+    private Rect viewport;
+
+    @Setup
+    public void setup() {
+        tiles = new SyntheticTiles(VIEWPORT, 16, cachedShapes);
+        connectivity = ConnectivityMatrix.of(tiles, SyntheticTiles.TEXTURES);
+        viewport = new Rect(0, 0, VIEWPORT - 1, VIEWPORT - 1);
+    }
+
+    @Benchmark
+    public void sweep(Blackhole blackhole) {
+        TileRenderIterator iterator = new TileRenderIterator(tiles, connectivity);
+        iterator.setScope(viewport);
+        iterator.setStep(step);
+        for (SubTileQuartet quartet : iterator) {
+            for (SubTile subtile : quartet) {
+                blackhole.consume(subtile.tile);
+                blackhole.consume(subtile.shape);
+            }
+        }
+    }
+}
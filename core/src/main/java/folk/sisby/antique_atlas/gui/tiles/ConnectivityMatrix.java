@@ -0,0 +1,63 @@
+package folk.sisby.antique_atlas.gui.tiles;
+
+/**
+ * A {@link TileConnectivity} compiled into dense bit matrices - one row of bits per tile ID, so each test is a single bit read.
+ * IDs outside the matrix only tile to themselves.
+ */
+public class ConnectivityMatrix implements TileConnectivity {
+    private final int size;
+    private final int stride;
+    private final long[] tiles;
+    private final long[] tilesHorizontally;
+    private final long[] tilesVertically;
+
+    private ConnectivityMatrix(int size) {
+        this.size = size;
+        this.stride = (size + Long.SIZE - 1) >>> 6;
+        this.tiles = new long[size * stride];
+        this.tilesHorizontally = new long[size * stride];
+        this.tilesVertically = new long[size * stride];
+    }
+
+    /**
+     * Evaluates every pair of IDs below {@code size} once - for relations that are slow to test, e.g. backed by sets.
+     */
+    public static ConnectivityMatrix of(TileConnectivity connectivity, int size) {
+        ConnectivityMatrix matrix = new ConnectivityMatrix(size);
+        for (int tile = 0; tile < size; tile++) {
+            int row = tile * matrix.stride;
+            for (int to = 0; to < size; to++) {
+                long bit = 1L << to;
+                int word = row + (to >>> 6);
+                if (connectivity.tiles((short) tile, (short) to)) matrix.tiles[word] |= bit;
+                if (connectivity.tilesHorizontally((short) tile, (short) to)) matrix.tilesHorizontally[word] |= bit;
+                if (connectivity.tilesVertically((short) tile, (short) to)) matrix.tilesVertically[word] |= bit;
+            }
+        }
+        return matrix;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private boolean get(long[] bits, short tile, short to) {
+        if (tile < 0 || to < 0 || tile >= size || to >= size) return tile == to;
+        return (bits[tile * stride + (to >>> 6)] >>> to & 1) != 0;
+    }
+
+    @Override
+    public boolean tiles(short tile, short to) {
+        return get(tiles, tile, to);
+    }
+
+    @Override
+    public boolean tilesHorizontally(short tile, short to) {
+        return get(tilesHorizontally, tile, to);
+    }
+
+    @Override
+    public boolean tilesVertically(short tile, short to) {
+        return get(tilesVertically, tile, to);
+    }
+}
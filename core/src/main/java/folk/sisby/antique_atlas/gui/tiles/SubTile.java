@@ -1,6 +1,6 @@
 package folk.sisby.antique_atlas.gui.tiles;
 
-import folk.sisby.antique_atlas.TileTexture;
+import folk.sisby.antique_atlas.util.TileStore;
 
 /**
  * A quarter of a tile, containing the following information:
@@ -17,7 +17,10 @@ import folk.sisby.antique_atlas.TileTexture;
  * @author Hunternif
  */
 public class SubTile {
-    public TileTexture texture;
+    /**
+     * ID of the tile texture, or {@link TileStore#EMPTY}.
+     */
+    public short tile = TileStore.EMPTY;
     /**
      * coordinates of the subtile on the grid, measured in subtiles,
      * starting from (0,0) in the top left corner.
@@ -55,6 +58,7 @@ public class SubTile {
 
     public SubTile copy() {
         SubTile copy = new SubTile(part);
+        copy.tile = this.tile;
         copy.x = this.x;
         copy.y = this.y;
         copy.shape = this.shape;
@@ -0,0 +1,12 @@
+package folk.sisby.antique_atlas.gui.tiles;
+
+/**
+ * Which tile IDs stitch into each other - always including themselves.
+ */
+public interface TileConnectivity {
+    boolean tiles(short tile, short to);
+
+    boolean tilesHorizontally(short tile, short to);
+
+    boolean tilesVertically(short tile, short to);
+}
@@ -0,0 +1,189 @@
+package folk.sisby.antique_atlas.gui.tiles;
+
+import folk.sisby.antique_atlas.gui.tiles.SubTile.Part;
+import folk.sisby.antique_atlas.util.Rect;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+
+/**
+ * Iterates through a tile storage for the purpose of rendering their textures.
+ * Works on tile IDs only - textures are looked up by whoever draws the subtiles.
+ * Returned is an array of 4 {@link SubTile}s which constitute a whole Tile.
+ * The SubTile objects are generated on the fly and not retained in memory.
+ * May return null!
+ *
+ * @author Hunternif
+ */
+public class TileRenderIterator implements Iterator<SubTileQuartet>, Iterable<SubTileQuartet> {
+
+    private final TileSource tiles;
+    private final TileConnectivity connectivity;
+
+    /**
+     * How many chunks a tile spans. Used for viewing the map at a scale below
+     * the threshold at which the tile texture is of minimum size and no longer
+     * scales down. Can't be less than 1.
+     * Each tile shows the most common texture within the chunks it spans.
+     */
+    private int step = 1;
+
+    public void setStep(int step) {
+        if (step >= 1) {
+            this.step = step;
+            fetched = false;
+        }
+    }
+
+    /**
+     * The scope of iteration.
+     */
+    private final Rect scope = new Rect();
+
+    /**
+     * Restarts iteration over a new scope - the iterator and its window can be reused across frames.
+     */
+    public void setScope(Rect scope) {
+        this.scope.set(scope);
+        chunkX = scope.minX;
+        chunkY = scope.minY;
+        subtileX = -1;
+        subtileY = -1;
+        fetched = false;
+    }
+
+    /**
+     * The tiles and shapes of the whole scope, fetched in one pass before iterating.
+     * Rows are {@link #windowWidth} tiles wide, starting two tiles left of and above the scope,
+     * so every tile stitched against is inside it. Reused while large enough.
+     */
+    private short[] tileWindow = new short[0];
+    private short[] shapeWindow = new short[0];
+    private int windowWidth;
+    /**
+     * Index of the current quartet's bottom right tile in the window.
+     */
+    private int index;
+    private boolean fetched = false;
+
+    /**
+     * Shortcuts for the quartet.
+     */
+    private final SubTile _d = new SubTile(Part.BOTTOM_RIGHT),
+        _e = new SubTile(Part.BOTTOM_LEFT),
+        _h = new SubTile(Part.TOP_RIGHT),
+        _i = new SubTile(Part.TOP_LEFT);
+    private final SubTileQuartet quartet = new SubTileQuartet(_d, _e, _h, _i);
+
+    /**
+     * Current index into the tile storage, which presumably has every tile spanning exactly 1 chunk.
+     */
+    private int chunkX, chunkY;
+    /**
+     * Current index into the grid of subtiles, starting at (-1, -1).
+     */
+    private int subtileX = -1, subtileY = -1;
+
+    public TileRenderIterator(TileSource tiles, TileConnectivity connectivity) {
+        this.tiles = tiles;
+        this.connectivity = connectivity;
+        setScope(tiles.getScope());
+    }
+
+    @Override
+    public @NotNull Iterator<SubTileQuartet> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return chunkX >= scope.minX && chunkX <= scope.maxX + 1 &&
+            chunkY >= scope.minY && chunkY <= scope.maxY + 1;
+    }
+
+    private void fetch() {
+        int columns = Math.max(0, (scope.maxX + 1 - scope.minX) / step + 1);
+        int rows = Math.max(0, (scope.maxY + 1 - scope.minY) / step + 1);
+        windowWidth = columns + 3;
+        int size = windowWidth * (rows + 3);
+        if (tileWindow.length < size) {
+            tileWindow = new short[size];
+            shapeWindow = new short[size];
+        }
+        tiles.getTileIds(scope.minX - step * 2, scope.minY - step * 2, windowWidth, rows + 3, step, tileWindow);
+        tiles.getShapes(scope.minX - step * 2, scope.minY - step * 2, windowWidth, rows + 3, step, tileWindow, shapeWindow);
+        index = windowWidth * 2 + 2;
+        fetched = true;
+    }
+
+    /**
+     * The group of adjacent tiles used for stitching, read from the window around 'i'.
+     * <pre>
+     *   a | b
+     * c d | e f
+     * ---------
+     * g h | i j
+     *   k | l
+     * </pre>
+     * 'i' is at (x, y).
+     * The returned array of subtiles represents the corner 'd-e-h-i'
+     */
+    @Override
+    public SubTileQuartet next() {
+        if (!fetched) fetch();
+        int above = index - windowWidth;
+        int below = index + windowWidth;
+        short d = tileWindow[above - 1];
+        short e = tileWindow[above];
+        short h = tileWindow[index - 1];
+        short i = tileWindow[index];
+
+        quartet.setCoords(subtileX, subtileY);
+        _d.tile = d;
+        _e.tile = e;
+        _h.tile = h;
+        _i.tile = i;
+
+        short shapesD = shapeWindow[above - 1];
+        short shapesE = shapeWindow[above];
+        short shapesH = shapeWindow[index - 1];
+        short shapesI = shapeWindow[index];
+        if (shapesD != TileShapes.UNKNOWN && shapesE != TileShapes.UNKNOWN && shapesH != TileShapes.UNKNOWN && shapesI != TileShapes.UNKNOWN) {
+            _d.shape = TileShapes.unpack(shapesD, Part.BOTTOM_RIGHT);
+            _e.shape = TileShapes.unpack(shapesE, Part.BOTTOM_LEFT);
+            _h.shape = TileShapes.unpack(shapesH, Part.TOP_RIGHT);
+            _i.shape = TileShapes.unpack(shapesI, Part.TOP_LEFT);
+        } else {
+            short a = tileWindow[above - windowWidth - 1];
+            short b = tileWindow[above - windowWidth];
+            short c = tileWindow[above - 2];
+            short f = tileWindow[above + 1];
+            short g = tileWindow[index - 2];
+            short j = tileWindow[index + 1];
+            short k = tileWindow[below - 1];
+            short l = tileWindow[below];
+            _d.shape = TileShapes.stitch(connectivity, d, e, h, i, c, a);
+            _e.shape = TileShapes.stitch(connectivity, e, d, i, h, f, b);
+            _h.shape = TileShapes.stitch(connectivity, h, i, d, e, g, k);
+            _i.shape = TileShapes.stitch(connectivity, i, h, e, d, j, l);
+        }
+
+        chunkX += step;
+        subtileX += 2;
+        index++;
+        if (chunkX > scope.maxX + 1) {
+            chunkX = scope.minX;
+            subtileX = -1;
+            chunkY += step;
+            subtileY += 2;
+            index += 3;
+        }
+        return quartet;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("cannot remove subtiles from tile storage");
+    }
+
+}
@@ -0,0 +1,174 @@
+package folk.sisby.antique_atlas.gui.tiles;
+
+import folk.sisby.antique_atlas.gui.tiles.SubTile.Part;
+import folk.sisby.antique_atlas.gui.tiles.SubTile.Shape;
+import folk.sisby.antique_atlas.util.MathUtil;
+import folk.sisby.antique_atlas.util.TilePyramid;
+import folk.sisby.antique_atlas.util.TileStore;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+/**
+ * The stitched shapes of every tile's four corners, for each level of a {@link TilePyramid}.
+ * A tile's shapes only depend on its 3x3 neighbourhood, so they're solved the first time they're read
+ * and kept until a tile in that neighbourhood changes.
+ * Each region of each level counts how often that's happened, so anything built from a region's tiles can tell when it's stale.
+ */
+public class TileShapes {
+    /**
+     * Shapes that haven't been solved yet.
+     */
+    public static final short UNKNOWN = TileStore.EMPTY;
+    /**
+     * The shapes of an empty tile - it stitches to nothing.
+     */
+    public static final short NONE = pack(Shape.SINGLE_OBJECT, Shape.SINGLE_OBJECT, Shape.SINGLE_OBJECT, Shape.SINGLE_OBJECT);
+
+    private static final Shape[] SHAPES = Shape.values();
+
+    private final TilePyramid tiles;
+    private final TileConnectivity connectivity;
+    private final TileStore[] levels = new TileStore[TilePyramid.LEVELS + 1];
+    private final Long2IntOpenHashMap[] revisions = new Long2IntOpenHashMap[TilePyramid.LEVELS + 1];
+    private int generation = 0;
+
+    public TileShapes(TilePyramid tiles, TileConnectivity connectivity) {
+        this.tiles = tiles;
+        this.connectivity = connectivity;
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = new TileStore();
+            revisions[i] = new Long2IntOpenHashMap();
+        }
+    }
+
+    /**
+     * Packs one shape per {@link Part} into 3 bits each.
+     */
+    public static short pack(Shape topLeft, Shape topRight, Shape bottomLeft, Shape bottomRight) {
+        return (short) (topLeft.ordinal() | topRight.ordinal() << 3 | bottomLeft.ordinal() << 6 | bottomRight.ordinal() << 9);
+    }
+
+    public static Shape unpack(short shapes, Part part) {
+        return SHAPES[shapes >> part.ordinal() * 3 & 7];
+    }
+
+    private static boolean tilesTo(TileConnectivity connectivity, short tile, short to) {
+        return tile != TileStore.EMPTY && to != TileStore.EMPTY && connectivity.tiles(tile, to);
+    }
+
+    private static boolean tilesToHorizontal(TileConnectivity connectivity, short tile, short to) {
+        return tile != TileStore.EMPTY && to != TileStore.EMPTY && connectivity.tilesHorizontally(tile, to);
+    }
+
+    private static boolean tilesToVertical(TileConnectivity connectivity, short tile, short to) {
+        return tile != TileStore.EMPTY && to != TileStore.EMPTY && connectivity.tilesVertically(tile, to);
+    }
+
+    /**
+     * Stitches one corner of a tile to its neighbours.
+     *
+     * @param horizontal         the neighbour beside the corner.
+     * @param vertical           the neighbour above or below the corner.
+     * @param diagonal           the neighbour across the corner.
+     * @param oppositeHorizontal the neighbour on the other side from {@code horizontal}.
+     * @param oppositeVertical   the neighbour on the other side from {@code vertical}.
+     */
+    public static Shape stitch(TileConnectivity connectivity, short tile, short horizontal, short vertical, short diagonal, short oppositeHorizontal, short oppositeVertical) {
+        boolean tilesHorizontally = tilesToHorizontal(connectivity, tile, horizontal);
+        if (tilesToVertical(connectivity, tile, vertical)) {
+            if (!tilesHorizontally) return Shape.VERTICAL;
+            return tilesTo(connectivity, tile, diagonal) ? Shape.FULL : Shape.CONCAVE;
+        }
+        if (tilesHorizontally) return Shape.HORIZONTAL;
+        return tilesToHorizontal(connectivity, tile, oppositeHorizontal) || tilesToVertical(connectivity, tile, oppositeVertical) ? Shape.CONVEX : Shape.SINGLE_OBJECT;
+    }
+
+    /**
+     * @param x the cell X at the given level, i.e. chunk X >> level.
+     * @param z the cell Z at the given level, i.e. chunk Z >> level.
+     * @return the cell's shapes, packed by {@link #pack(Shape, Shape, Shape, Shape)}.
+     */
+    public short get(int level, int x, int z) {
+        short shapes = levels[level].get(x, z);
+        if (shapes != UNKNOWN) return shapes;
+        short tile = tiles.get(level, x, z);
+        if (tile == TileStore.EMPTY) return NONE;
+        shapes = solve(level, x, z, tile);
+        levels[level].set(x, z, shapes);
+        return shapes;
+    }
+
+    /**
+     * Copies an area of a level like {@link TileStore#copyArea(int, int, int, int, short[])}, solving any shapes that aren't known yet.
+     *
+     * @param tileIds the area's tiles at the same level.
+     */
+    public void copyArea(int level, int x, int z, int width, int height, short[] tileIds, short[] out) {
+        levels[level].copyArea(x, z, width, height, out);
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                int i = row * width + column;
+                if (out[i] != UNKNOWN) continue;
+                if (tileIds[i] == TileStore.EMPTY) {
+                    out[i] = NONE;
+                } else {
+                    out[i] = solve(level, x + column, z + row, tileIds[i]);
+                    levels[level].set(x + column, z + row, out[i]);
+                }
+            }
+        }
+    }
+
+    private short solve(int level, int x, int z, short tile) {
+        short north = tiles.get(level, x, z - 1);
+        short south = tiles.get(level, x, z + 1);
+        short west = tiles.get(level, x - 1, z);
+        short east = tiles.get(level, x + 1, z);
+        return pack(
+            stitch(connectivity, tile, west, north, tiles.get(level, x - 1, z - 1), east, south),
+            stitch(connectivity, tile, east, north, tiles.get(level, x + 1, z - 1), west, south),
+            stitch(connectivity, tile, west, south, tiles.get(level, x - 1, z + 1), east, north),
+            stitch(connectivity, tile, east, south, tiles.get(level, x + 1, z + 1), west, north)
+        );
+    }
+
+    /**
+     * Forgets the shapes around a chunk after its tile changed.
+     *
+     * @param changedLevels the highest pyramid level whose cell above the chunk changed along with it.
+     */
+    public void invalidate(int x, int z, int changedLevels) {
+        for (int level = 0; level <= changedLevels; level++) {
+            int cellX = x >> level;
+            int cellZ = z >> level;
+            for (int dz = -1; dz <= 1; dz++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    levels[level].set(cellX + dx, cellZ + dz, UNKNOWN);
+                }
+            }
+            for (int regionZ = (cellZ - 1) >> TileStore.REGION_POWER; regionZ <= (cellZ + 1) >> TileStore.REGION_POWER; regionZ++) {
+                for (int regionX = (cellX - 1) >> TileStore.REGION_POWER; regionX <= (cellX + 1) >> TileStore.REGION_POWER; regionX++) {
+                    revisions[level].addTo(MathUtil.packXZ(regionX, regionZ), 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param regionX the region X at the given level, i.e. chunk X >> level >> {@link TileStore#REGION_POWER}.
+     * @param regionZ the region Z at the given level, i.e. chunk Z >> level >> {@link TileStore#REGION_POWER}.
+     * @return a number that changes whenever a tile or shape in the region does.
+     */
+    public long getRevision(int level, int regionX, int regionZ) {
+        return (long) generation << 32 | revisions[level].get(MathUtil.packXZ(regionX, regionZ)) & 0xFFFFFFFFL;
+    }
+
+    public void clear() {
+        for (TileStore level : levels) {
+            level.clear();
+        }
+        for (Long2IntOpenHashMap revision : revisions) {
+            revision.clear();
+        }
+        generation++;
+    }
+}
@@ -0,0 +1,62 @@
+package folk.sisby.antique_atlas.gui.tiles;
+
+import folk.sisby.antique_atlas.util.Rect;
+
+/**
+ * Tile IDs for {@link TileRenderIterator} to stitch.
+ */
+public interface TileSource {
+    /**
+     * @return the area containing every tile.
+     */
+    Rect getScope();
+
+    /**
+     * @param step how many chunks across the tile covers - a power of two. Coordinates are rounded down to a multiple of it.
+     * @return the ID of the most common tile within the area, or {@link folk.sisby.antique_atlas.util.TileStore#EMPTY}.
+     */
+    short getTileId(int x, int z, int step);
+
+    /**
+     * @param step as in {@link #getTileId(int, int, int)}.
+     * @return the tile's stitched shapes, packed by {@link TileShapes#pack}, or {@link TileShapes#UNKNOWN} to have them stitched from the tile IDs.
+     */
+    default short getShapes(int x, int z, int step) {
+        return TileShapes.UNKNOWN;
+    }
+
+    /**
+     * @param regionX the region X in tiles of the given step, i.e. (chunk X / step) >> {@link folk.sisby.antique_atlas.util.TileStore#REGION_POWER}.
+     * @param regionZ the region Z in tiles of the given step, i.e. (chunk Z / step) >> {@link folk.sisby.antique_atlas.util.TileStore#REGION_POWER}.
+     * @return a number that changes whenever the region's tiles or shapes do, or -1 if changes aren't tracked.
+     */
+    default long getRevision(int regionX, int regionZ, int step) {
+        return -1;
+    }
+
+    /**
+     * Copies the tile IDs of an area into a row-major array - tile (column, row) is the one at {@code (x + column * step, z + row * step)}.
+     *
+     * @param out at least {@code width * height} long.
+     */
+    default void getTileIds(int x, int z, int width, int height, int step, short[] out) {
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                out[row * width + column] = getTileId(x + column * step, z + row * step, step);
+            }
+        }
+    }
+
+    /**
+     * Copies the shapes of an area like {@link #getTileIds(int, int, int, int, int, short[])}.
+     *
+     * @param tileIds the area's tile IDs, as copied by {@link #getTileIds(int, int, int, int, int, short[])}.
+     */
+    default void getShapes(int x, int z, int width, int height, int step, short[] tileIds, short[] out) {
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                out[row * width + column] = getShapes(x + column * step, z + row * step, step);
+            }
+        }
+    }
+}
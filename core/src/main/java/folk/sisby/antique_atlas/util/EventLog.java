@@ -0,0 +1,502 @@
+package folk.sisby.antique_atlas.util;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A compact binary log of one dimension's Surveyor client events, with the terrain and structures they point at resolved into plain data,
+ * so a session can be replayed without Minecraft.
+ * The stream is deflated. Integers are varints, and each string is written in full once, then referenced by index.
+ * Each event is its type and the nanoseconds since the previous one, followed by count-prefixed sections:
+ * regions for {@link #WORLD_LOAD} and {@link #TERRAIN_UPDATED}, then structures for {@link #WORLD_LOAD} and {@link #STRUCTURES_ADDED},
+ * then landmarks for {@link #WORLD_LOAD}, {@link #LANDMARKS_ADDED} and {@link #LANDMARKS_REMOVED}.
+ */
+public class EventLog {
+    public static final int MAGIC = 0x41414556; // AAEV
+    public static final int FORMAT_VERSION = 1;
+
+    public static final byte WORLD_LOAD = 0;
+    public static final byte TERRAIN_UPDATED = 1;
+    public static final byte STRUCTURES_ADDED = 2;
+    public static final byte LANDMARKS_ADDED = 3;
+    public static final byte LANDMARKS_REMOVED = 4;
+    public static final String[] EVENT_NAMES = {"worldLoad", "terrainUpdated", "structuresAdded", "landmarksAdded", "landmarksRemoved"};
+
+    private static final int HAS_SURFACE = 1;
+    private static final int HAS_FLOOR = 2;
+
+    /**
+     * What tiling needs to know about the dimension - see {@code TerrainTiling.Context}.
+     */
+    public record Header(String dimension, int defaultTile, boolean checkRavines, boolean nether, int topY, int netherMaxY, int seaLevel) {
+    }
+
+    /**
+     * A single-layer chunk summary, shaped like Surveyor's {@code LayerSummary.Raw}.
+     */
+    public record Layer(BitSet exists, int[] depths, int[] waterDepths, int[] blocks, int[] biomes) {
+    }
+
+    /**
+     * @param surface the full-height layer, or null if the chunk has none.
+     * @param floor   in the nether, the low floor layer, or null if the chunk has none.
+     */
+    public record Chunk(int x, int z, @Nullable Layer surface, @Nullable Layer floor) {
+    }
+
+    /**
+     * Reads recorded chunks for {@link TerrainHistogram#classify}.
+     */
+    public static final TerrainHistogram.Layers<Chunk, Layer> LAYERS = new TerrainHistogram.Layers<>() {
+        @Override
+        public @Nullable Layer surface(Chunk chunk) {
+            return chunk.surface();
+        }
+
+        @Override
+        public @Nullable Layer floor(Chunk chunk) {
+            return chunk.floor();
+        }
+
+        @Override
+        public BitSet exists(Layer layer) {
+            return layer.exists();
+        }
+
+        @Override
+        public int[] depths(Layer layer) {
+            return layer.depths();
+        }
+
+        @Override
+        public int[] waterDepths(Layer layer) {
+            return layer.waterDepths();
+        }
+
+        @Override
+        public int[] blocks(Layer layer) {
+            return layer.blocks();
+        }
+
+        @Override
+        public int[] biomes(Layer layer) {
+            return layer.biomes();
+        }
+    };
+
+    /**
+     * A region's reported chunks, with the palettes they share.
+     */
+    public record Region(int regionX, int regionZ, String[] biomeIds, TerrainHistogram.Palette palette, List<Chunk> chunks) {
+    }
+
+    /**
+     * A texture a structure resolved to on one chunk.
+     */
+    public record StructureTile(int x, int z, String texture, int priority) {
+    }
+
+    public record Structure(String key, int x, int z, List<StructureTile> tiles) {
+    }
+
+    public record Landmark(String type, int x, int y, int z) {
+    }
+
+    public static boolean hasRegions(byte type) {
+        return type == WORLD_LOAD || type == TERRAIN_UPDATED;
+    }
+
+    public static boolean hasStructures(byte type) {
+        return type == WORLD_LOAD || type == STRUCTURES_ADDED;
+    }
+
+    public static boolean hasLandmarks(byte type) {
+        return type == WORLD_LOAD || type == LANDMARKS_ADDED || type == LANDMARKS_REMOVED;
+    }
+
+    /**
+     * Buffers writes without the locking of {@link java.io.BufferedOutputStream}, which dominates when writing varints a byte at a time.
+     */
+    private static class Buffer extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[1 << 16];
+        private int size = 0;
+
+        private Buffer(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) drain();
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > buffer.length - size) drain();
+            if (length > buffer.length) {
+                out.write(bytes, offset, length);
+            } else {
+                System.arraycopy(bytes, offset, buffer, size, length);
+                size += length;
+            }
+        }
+
+        private void drain() throws IOException {
+            out.write(buffer, 0, size);
+            size = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            out.close();
+        }
+    }
+
+    /**
+     * The reading side of {@link Buffer}.
+     */
+    private static class Unbuffer extends InputStream {
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position = 0;
+        private int limit = 0;
+
+        private Unbuffer(InputStream in) {
+            this.in = in;
+        }
+
+        private boolean fill() throws IOException {
+            position = 0;
+            limit = Math.max(0, in.read(buffer));
+            return limit > 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !fill()) return -1;
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) return 0;
+            if (position == limit && !fill()) return -1;
+            int read = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, bytes, offset, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Object2IntMap<String> strings = new Object2IntOpenHashMap<>();
+        private long lastEvent = System.nanoTime();
+
+        public Writer(OutputStream stream, Header header) throws IOException {
+            out = new DataOutputStream(new Buffer(new DeflaterOutputStream(stream, true)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(header.dimension());
+            writeVarInt(header.defaultTile());
+            out.writeBoolean(header.checkRavines());
+            out.writeBoolean(header.nether());
+            writeSignedVarInt(header.topY());
+            writeSignedVarInt(header.netherMaxY());
+            writeSignedVarInt(header.seaLevel());
+        }
+
+        /**
+         * Starts an event - its sections must follow, each started with its count.
+         */
+        public void event(byte type) throws IOException {
+            long now = System.nanoTime();
+            out.writeByte(type);
+            writeVarLong(now - lastEvent);
+            lastEvent = now;
+        }
+
+        public void count(int count) throws IOException {
+            writeVarInt(count);
+        }
+
+        public void region(Region region) throws IOException {
+            writeSignedVarInt(region.regionX());
+            writeSignedVarInt(region.regionZ());
+            TerrainHistogram.Palette palette = region.palette();
+            writeVarInt(region.biomeIds().length);
+            for (int i = 0; i < region.biomeIds().length; i++) {
+                writeString(region.biomeIds()[i]);
+                writeVarInt(palette.biomePriorities()[i]);
+                out.writeBoolean(palette.swampBiomes()[i]);
+            }
+            writeVarInt(palette.blockKinds().length);
+            out.write(palette.blockKinds());
+            writeVarInt(region.chunks().size());
+            for (Chunk chunk : region.chunks()) {
+                writeVarInt(TileStore.index(chunk.x(), chunk.z()));
+                out.writeByte((chunk.surface() == null ? 0 : HAS_SURFACE) | (chunk.floor() == null ? 0 : HAS_FLOOR));
+                if (chunk.surface() != null) writeLayer(chunk.surface());
+                if (chunk.floor() != null) writeLayer(chunk.floor());
+            }
+        }
+
+        public void structure(Structure structure) throws IOException {
+            writeString(structure.key());
+            writeSignedVarInt(structure.x());
+            writeSignedVarInt(structure.z());
+            writeVarInt(structure.tiles().size());
+            for (StructureTile tile : structure.tiles()) {
+                writeSignedVarInt(tile.x() - structure.x());
+                writeSignedVarInt(tile.z() - structure.z());
+                writeString(tile.texture());
+                writeSignedVarInt(tile.priority());
+            }
+        }
+
+        public void landmark(Landmark landmark) throws IOException {
+            writeString(landmark.type());
+            writeSignedVarInt(landmark.x());
+            writeSignedVarInt(landmark.y());
+            writeSignedVarInt(landmark.z());
+        }
+
+        private void writeLayer(Layer layer) throws IOException {
+            long[] words = layer.exists().toLongArray();
+            writeVarInt(words.length);
+            for (long word : words) out.writeLong(word);
+            writeInts(layer.depths());
+            writeInts(layer.waterDepths());
+            writeInts(layer.blocks());
+            writeInts(layer.biomes());
+        }
+
+        private void writeInts(int[] values) throws IOException {
+            writeVarInt(values.length);
+            for (int value : values) writeSignedVarInt(value);
+        }
+
+        private void writeString(String string) throws IOException {
+            int index = strings.getOrDefault(string, -1);
+            if (index != -1) {
+                writeVarInt(index);
+            } else {
+                writeVarInt(strings.size());
+                out.writeUTF(string);
+                strings.put(string, strings.size());
+            }
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeSignedVarInt(int value) throws IOException {
+            writeVarInt(value << 1 ^ value >> 31);
+        }
+
+        /**
+         * Writes out everything so far, so the log stays readable if the game exits without closing it.
+         */
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Receives the parts of an event as they're read, so whole events never have to be held in memory.
+     */
+    public interface Listener {
+        default void region(Region region) {
+        }
+
+        default void structure(Structure structure) {
+        }
+
+        default void landmark(Landmark landmark) {
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private final Header header;
+        private byte type;
+        private long nanos;
+
+        public Reader(InputStream stream) throws IOException {
+            in = new DataInputStream(new Unbuffer(new InflaterInputStream(stream)));
+            if (in.readInt() != MAGIC) throw new IOException("Not an Antique Atlas event log");
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) throw new IOException("Unsupported event log version " + version);
+            header = new Header(readString(), readVarInt(), in.readBoolean(), in.readBoolean(), readSignedVarInt(), readSignedVarInt(), readSignedVarInt());
+        }
+
+        public Header getHeader() {
+            return header;
+        }
+
+        /**
+         * Reads the next event's header, leaving its sections for {@link #read(Listener)}.
+         *
+         * @return whether there was another event.
+         */
+        public boolean next() throws IOException {
+            int read = in.read();
+            if (read == -1) return false;
+            type = (byte) read;
+            if (type < WORLD_LOAD || type > LANDMARKS_REMOVED) throw new IOException("Unknown event type " + type);
+            nanos = readVarLong();
+            return true;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        /**
+         * @return the nanoseconds between the previous event and this one, as recorded.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Reads the current event's sections into a listener.
+         */
+        public void read(Listener listener) throws IOException {
+            if (hasRegions(type)) {
+                for (int i = readVarInt(); i > 0; i--) listener.region(readRegion());
+            }
+            if (hasStructures(type)) {
+                for (int i = readVarInt(); i > 0; i--) listener.structure(readStructure());
+            }
+            if (hasLandmarks(type)) {
+                for (int i = readVarInt(); i > 0; i--) listener.landmark(new Landmark(readString(), readSignedVarInt(), readSignedVarInt(), readSignedVarInt()));
+            }
+        }
+
+        private Region readRegion() throws IOException {
+            int regionX = readSignedVarInt();
+            int regionZ = readSignedVarInt();
+            String[] biomeIds = new String[readVarInt()];
+            int[] priorities = new int[biomeIds.length];
+            boolean[] swamps = new boolean[biomeIds.length];
+            for (int i = 0; i < biomeIds.length; i++) {
+                biomeIds[i] = readString();
+                priorities[i] = readVarInt();
+                swamps[i] = in.readBoolean();
+            }
+            byte[] blockKinds = new byte[readVarInt()];
+            in.readFully(blockKinds);
+            List<Chunk> chunks = new ArrayList<>();
+            for (int i = readVarInt(); i > 0; i--) {
+                int index = readVarInt();
+                int flags = in.readByte();
+                chunks.add(new Chunk(
+                    regionX << TileStore.REGION_POWER | (index & TileStore.REGION_MASK),
+                    regionZ << TileStore.REGION_POWER | (index >> TileStore.REGION_POWER),
+                    (flags & HAS_SURFACE) == 0 ? null : readLayer(),
+                    (flags & HAS_FLOOR) == 0 ? null : readLayer()
+                ));
+            }
+            return new Region(regionX, regionZ, biomeIds, new TerrainHistogram.Palette(priorities, swamps, blockKinds), chunks);
+        }
+
+        private Structure readStructure() throws IOException {
+            String key = readString();
+            int x = readSignedVarInt();
+            int z = readSignedVarInt();
+            List<StructureTile> tiles = new ArrayList<>();
+            for (int i = readVarInt(); i > 0; i--) {
+                tiles.add(new StructureTile(x + readSignedVarInt(), z + readSignedVarInt(), readString(), readSignedVarInt()));
+            }
+            return new Structure(key, x, z, tiles);
+        }
+
+        private Layer readLayer() throws IOException {
+            long[] words = new long[readVarInt()];
+            for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+            return new Layer(BitSet.valueOf(words), readInts(), readInts(), readInts(), readInts());
+        }
+
+        private int[] readInts() throws IOException {
+            int[] values = new int[readVarInt()];
+            for (int i = 0; i < values.length; i++) values[i] = readSignedVarInt();
+            return values;
+        }
+
+        private String readString() throws IOException {
+            int index = readVarInt();
+            if (index < strings.size()) return strings.get(index);
+            if (index != strings.size()) throw new IOException("String index " + index + " out of order");
+            String string = in.readUTF();
+            strings.add(string);
+            return string;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                int b = in.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        private int readSignedVarInt() throws IOException {
+            int value = readVarInt();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
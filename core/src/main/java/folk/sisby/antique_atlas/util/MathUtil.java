@@ -0,0 +1,25 @@
+package folk.sisby.antique_atlas.util;
+
+public class MathUtil {
+    /**
+     * Returns the nearest number to a multiple of a given number.
+     */
+    public static int roundToBase(int a, int base) {
+        return a - a % base;
+    }
+
+    /**
+     * Packs a pair of coordinates into a long, laid out the same way as {@code ChunkPos#toLong}.
+     */
+    public static long packXZ(int x, int z) {
+        return (long) x & 0xFFFFFFFFL | ((long) z & 0xFFFFFFFFL) << 32;
+    }
+
+    public static int unpackX(long packed) {
+        return (int) packed;
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed >>> 32);
+    }
+}
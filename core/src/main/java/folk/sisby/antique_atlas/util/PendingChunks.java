@@ -0,0 +1,302 @@
+package folk.sisby.antique_atlas.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A deduplicated queue of chunks waiting to be tiled, kept as one bitset per 32x32 chunk region.
+ * Adding and membership checks are constant time, and whole regions can be added as bitsets without expanding them into chunks.
+ * Chunks are polled nearest-first: chunks inside the focused viewport come before all others, ordered by distance to its center,
+ * then the rest by distance to either the player or the viewport center.
+ * Regions wait in a heap keyed by the lower bound of their score, and are only sorted into chunk order once they reach the top -
+ * after that, each poll takes the next chunk from the best region and re-queues it by its next chunk's score.
+ * Moving the focus re-queues every region by its bound, so sorting is only repeated for regions that get polled again.
+ * Not thread-safe - the queue is only touched from the client thread, and tiling workers are handed polled chunks instead.
+ */
+public class PendingChunks {
+    private static final int WORDS = TileStore.PAGE_SIZE / Long.SIZE;
+    private static final long OFFSCREEN = 1L << 62;
+
+    private final Long2ObjectMap<Region> regions = new Long2ObjectOpenHashMap<>();
+    private int size = 0;
+
+    private int playerX = 0;
+    private int playerZ = 0;
+    private boolean hasView = false;
+    private int viewMinX, viewMinZ, viewMaxX, viewMaxZ;
+    private int viewCenterX, viewCenterZ;
+
+    /**
+     * Binary min-heap of {@code (score, region key)} pairs. Entries whose score no longer matches their region's are stale and skipped.
+     */
+    private long[] heapScores = new long[16];
+    private long[] heapKeys = new long[16];
+    private int heapSize = 0;
+    private boolean requeue = false;
+    private final long[] sortScores = new long[TileStore.PAGE_SIZE];
+
+    private static class Region {
+        private final long[] bits = new long[WORDS];
+        private int count = 0;
+        /**
+         * The region's pending chunk indices, best first - null until the region first reaches the top of the heap.
+         * Chunks polled since are skipped over by {@link #cursor}.
+         */
+        private int[] order = null;
+        private int cursor = 0;
+        /**
+         * The score of this region's live heap entry - its bound while unsorted, otherwise its best chunk's score.
+         */
+        private long queued;
+    }
+
+    /**
+     * Sets the position chunks are prioritized around. Changing it re-prioritizes everything still pending.
+     *
+     * @param view the chunks currently visible on the map, if any.
+     */
+    public void setFocus(int playerX, int playerZ, @Nullable Rect view) {
+        boolean viewChanged = view == null ? hasView : !hasView || view.minX != viewMinX || view.minY != viewMinZ || view.maxX != viewMaxX || view.maxY != viewMaxZ;
+        if (!viewChanged && playerX == this.playerX && playerZ == this.playerZ) return;
+        this.playerX = playerX;
+        this.playerZ = playerZ;
+        hasView = view != null;
+        if (view != null) {
+            viewMinX = view.minX;
+            viewMinZ = view.minY;
+            viewMaxX = view.maxX;
+            viewMaxZ = view.maxY;
+            viewCenterX = (int) (((long) viewMinX + viewMaxX) >> 1);
+            viewCenterZ = (int) (((long) viewMinZ + viewMaxZ) >> 1);
+        }
+        requeue = true;
+    }
+
+    private static long distSq(int ax, int az, int bx, int bz) {
+        long dx = (long) ax - bx;
+        long dz = (long) az - bz;
+        return dx * dx + dz * dz;
+    }
+
+    /**
+     * Squared distance from a point to the nearest chunk of an area.
+     */
+    private static long distSq(int x, int z, int minX, int minZ, int maxX, int maxZ) {
+        return distSq(x, z, Math.max(minX, Math.min(x, maxX)), Math.max(minZ, Math.min(z, maxZ)));
+    }
+
+    private long score(int x, int z) {
+        if (!hasView) return distSq(x, z, playerX, playerZ);
+        if (x >= viewMinX && x <= viewMaxX && z >= viewMinZ && z <= viewMaxZ) return distSq(x, z, viewCenterX, viewCenterZ);
+        return OFFSCREEN | Math.min(distSq(x, z, playerX, playerZ), distSq(x, z, viewCenterX, viewCenterZ));
+    }
+
+    /**
+     * @return a score no higher than that of any chunk in the region.
+     */
+    private long bound(long regionKey) {
+        int minX = MathUtil.unpackX(regionKey) << TileStore.REGION_POWER;
+        int minZ = MathUtil.unpackZ(regionKey) << TileStore.REGION_POWER;
+        int maxX = minX + TileStore.REGION_MASK;
+        int maxZ = minZ + TileStore.REGION_MASK;
+        if (!hasView) return distSq(playerX, playerZ, minX, minZ, maxX, maxZ);
+        if (minX <= viewMaxX && maxX >= viewMinX && minZ <= viewMaxZ && maxZ >= viewMinZ) return distSq(viewCenterX, viewCenterZ, minX, minZ, maxX, maxZ);
+        return OFFSCREEN | Math.min(distSq(playerX, playerZ, minX, minZ, maxX, maxZ), distSq(viewCenterX, viewCenterZ, minX, minZ, maxX, maxZ));
+    }
+
+    private long score(long regionKey, int index) {
+        return score((MathUtil.unpackX(regionKey) << TileStore.REGION_POWER) | (index & TileStore.REGION_MASK), (MathUtil.unpackZ(regionKey) << TileStore.REGION_POWER) | (index >> TileStore.REGION_POWER));
+    }
+
+    /**
+     * Sorts the region's pending chunks best first.
+     */
+    private void sort(long regionKey, Region region) {
+        int[] order = new int[region.count];
+        int i = 0;
+        for (int word = 0; word < WORDS; word++) {
+            long bits = region.bits[word];
+            while (bits != 0) {
+                int index = (word << 6) | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                sortScores[index] = score(regionKey, index);
+                order[i++] = index;
+            }
+        }
+        IntArrays.quickSort(order, (a, b) -> sortScores[a] != sortScores[b] ? Long.compare(sortScores[a], sortScores[b]) : Integer.compare(a, b));
+        region.order = order;
+        region.cursor = 0;
+    }
+
+    /**
+     * @return the index of the best pending chunk in a sorted region.
+     */
+    private static int peek(Region region) {
+        int[] order = region.order;
+        while (true) {
+            int index = order[region.cursor];
+            if ((region.bits[index >> 6] & 1L << index) != 0) return index;
+            region.cursor++;
+        }
+    }
+
+    private void push(long score, long regionKey) {
+        if (heapSize == heapScores.length) {
+            heapScores = Arrays.copyOf(heapScores, heapSize * 2);
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (heapScores[parent] <= score) break;
+            heapScores[i] = heapScores[parent];
+            heapKeys[i] = heapKeys[parent];
+            i = parent;
+        }
+        heapScores[i] = score;
+        heapKeys[i] = regionKey;
+    }
+
+    private void pop() {
+        long score = heapScores[--heapSize];
+        long key = heapKeys[heapSize];
+        int i = 0;
+        while (true) {
+            int child = (i << 1) + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapScores[child + 1] < heapScores[child]) child++;
+            if (heapScores[child] >= score) break;
+            heapScores[i] = heapScores[child];
+            heapKeys[i] = heapKeys[child];
+            i = child;
+        }
+        heapScores[i] = score;
+        heapKeys[i] = key;
+    }
+
+    /**
+     * Queues a region by its bound, dropping any order sorted for an older focus or before chunks were added.
+     */
+    private void queue(long regionKey, Region region) {
+        region.order = null;
+        region.queued = bound(regionKey);
+        push(region.queued, regionKey);
+    }
+
+    /**
+     * Rebuilds the heap with one entry per region, after the focus moved or stale entries piled up.
+     */
+    private void requeueAll() {
+        heapSize = 0;
+        for (Long2ObjectMap.Entry<Region> entry : regions.long2ObjectEntrySet()) {
+            queue(entry.getLongKey(), entry.getValue());
+        }
+        requeue = false;
+    }
+
+    /**
+     * @return whether the chunk wasn't already pending.
+     */
+    public boolean add(int x, int z) {
+        long regionKey = MathUtil.packXZ(x >> TileStore.REGION_POWER, z >> TileStore.REGION_POWER);
+        Region region = regions.get(regionKey);
+        if (region == null) {
+            region = new Region();
+            regions.put(regionKey, region);
+            if (!requeue) queue(regionKey, region);
+        }
+        int index = TileStore.index(x, z);
+        long mask = 1L << index;
+        if ((region.bits[index >> 6] & mask) != 0) return false;
+        region.bits[index >> 6] |= mask;
+        region.count++;
+        size++;
+        if (region.order != null && !requeue) queue(regionKey, region);
+        return true;
+    }
+
+    /**
+     * Adds a whole region's chunks at once.
+     *
+     * @param bits the chunks to add, as a bitset indexed by {@link TileStore#index(int, int)}.
+     * @return the number of chunks that weren't already pending.
+     */
+    public int addRegion(int regionX, int regionZ, long[] bits) {
+        long regionKey = MathUtil.packXZ(regionX, regionZ);
+        Region region = regions.get(regionKey);
+        boolean created = false;
+        int added = 0;
+        for (int word = 0; word < WORDS; word++) {
+            if (bits[word] == 0) continue;
+            if (region == null) {
+                region = new Region();
+                regions.put(regionKey, region);
+                created = true;
+            }
+            added += Long.bitCount(bits[word] & ~region.bits[word]);
+            region.bits[word] |= bits[word];
+        }
+        if (region != null) region.count += added;
+        size += added;
+        if (!requeue && (created || added > 0 && region.order != null)) queue(regionKey, region);
+        return added;
+    }
+
+    public boolean contains(int x, int z) {
+        Region region = regions.get(MathUtil.packXZ(x >> TileStore.REGION_POWER, z >> TileStore.REGION_POWER));
+        if (region == null) return false;
+        int index = TileStore.index(x, z);
+        return (region.bits[index >> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Removes the highest priority pending chunk. Only valid while the queue is not {@link #isEmpty() empty}.
+     *
+     * @return the chunk, packed with {@link MathUtil#packXZ(int, int)}.
+     */
+    public long poll() {
+        if (requeue || heapSize > 4 * regions.size() + 64) requeueAll();
+        while (true) {
+            long score = heapScores[0];
+            long regionKey = heapKeys[0];
+            pop();
+            Region region = regions.get(regionKey);
+            if (region == null || region.queued != score) continue; // Stale
+            if (region.order == null) { // Reached the top by its bound - sort it, then compete by its best chunk.
+                sort(regionKey, region);
+                region.queued = sortScores[region.order[0]];
+                push(region.queued, regionKey);
+                continue;
+            }
+            int index = peek(region);
+            region.bits[index >> 6] &= ~(1L << index);
+            size--;
+            if (--region.count == 0) {
+                regions.remove(regionKey);
+            } else {
+                region.queued = score(regionKey, peek(region));
+                push(region.queued, regionKey);
+            }
+            return MathUtil.packXZ((MathUtil.unpackX(regionKey) << TileStore.REGION_POWER) | (index & TileStore.REGION_MASK), (MathUtil.unpackZ(regionKey) << TileStore.REGION_POWER) | (index >> TileStore.REGION_POWER));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        regions.clear();
+        heapSize = 0;
+        requeue = false;
+        size = 0;
+    }
+}
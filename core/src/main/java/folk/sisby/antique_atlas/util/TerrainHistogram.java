@@ -0,0 +1,249 @@
+package folk.sisby.antique_atlas.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Picks a chunk's tile by a weighted vote over its columns. Works on plain arrays shaped like Surveyor's single-layer summaries.
+ * Candidate tiles are the chunk's biome palette followed by the custom tiles, counted once per elevation and once without one.
+ * Results are packed as {@code row * stride + tile}, where {@code stride} is the number of candidates - or -1 if nothing was counted.
+ */
+public class TerrainHistogram {
+    public static final int EMPTY_PRIORITY = 16;
+    public static final int RAVINE_PRIORITY = 12;
+    public static final int LAVA_PRIORITY = 6;
+    public static final int WATER_PRIORITY = 4;
+    public static final int ICE_PRIORITY = 3;
+    public static final int BEACH_PRIORITY = 3;
+
+    public static final int BEDROCK_ROOF_TILE = 0;
+    public static final int EMPTY_TILE = 1;
+    public static final int END_VOID_TILE = 2;
+    public static final int WATER_TILE = 3;
+    public static final int ICE_TILE = 4;
+    public static final int RAVINE_TILE = 5;
+    public static final int SWAMP_WATER_TILE = 6;
+    public static final int LAVA_TILE = 7;
+    public static final int LAVA_SHORE_TILE = 8;
+    public static final int CUSTOM_TILES = 9;
+
+    public static final byte OTHER_BLOCK = 0;
+    public static final byte ICE_BLOCK = 1;
+    public static final byte LAVA_BLOCK = 2;
+
+    public static final int ELEVATIONS = 5;
+    /**
+     * Histogram rows - one per elevation, then one for tiles without an elevation.
+     */
+    public static final int ROWS = ELEVATIONS + 1;
+    public static final int NO_ELEVATION = ELEVATIONS;
+
+    /**
+     * Flat {@code [row][biomes..., custom tiles...]} histogram, reused by each tiling thread.
+     */
+    private static final ThreadLocal<int[]> HISTOGRAM = ThreadLocal.withInitial(() -> new int[ROWS * 64]);
+
+    /**
+     * A region's palettes, reduced to what classification needs.
+     *
+     * @param blockKinds {@link #ICE_BLOCK}, {@link #LAVA_BLOCK} or {@link #OTHER_BLOCK} for each block in the palette.
+     */
+    public record Palette(int[] biomePriorities, boolean[] swampBiomes, byte[] blockKinds) {
+        public int stride() {
+            return biomePriorities.length + CUSTOM_TILES;
+        }
+    }
+
+    /**
+     * Reads the layers {@link #classify} needs from a chunk, whatever holds them - Surveyor's summaries or a recorded log.
+     *
+     * @param <C> the chunk.
+     * @param <L> a single-layer summary of it, shaped like Surveyor's {@code LayerSummary.Raw}.
+     */
+    public interface Layers<C, L> {
+        /**
+         * @return the full-height layer - in the nether, up to the logical height - or null if the chunk has none.
+         */
+        @Nullable L surface(C chunk);
+
+        /**
+         * @return the low nether floor layer, or null if the chunk has none. Only asked for in the nether.
+         */
+        @Nullable L floor(C chunk);
+
+        BitSet exists(L layer);
+
+        int[] depths(L layer);
+
+        int[] waterDepths(L layer);
+
+        int[] blocks(L layer);
+
+        int[] biomes(L layer);
+    }
+
+    /**
+     * Picks the vote for a chunk's dimension. In the nether, the low floor is read first, and the full-height layer
+     * only if the floor is missing or some column needs its biomes - so most chunks read a single layer, like the overworld.
+     * A chunk with no layer to read gets the default tile.
+     *
+     * @return a result as above - never -1 for a missing layer.
+     */
+    public static <C, L> int classify(Layers<C, L> layers, C chunk, Palette palette, int defaultTile, boolean checkRavines, boolean nether, int topY, int seaLevel) {
+        int defaultResult = NO_ELEVATION * palette.stride() + palette.biomePriorities().length + defaultTile;
+        if (nether) {
+            L floor = layers.floor(chunk);
+            if (floor == null) {
+                L surface = layers.surface(chunk);
+                return surface == null ? defaultResult : biomes(palette, defaultTile, layers.exists(surface), layers.biomes(surface));
+            }
+            int seaDepth = topY - 31;
+            int[] fallbackBiomes = null;
+            if (floorNeedsBiomes(seaDepth, layers.exists(floor), layers.depths(floor))) {
+                L surface = layers.surface(chunk);
+                if (surface == null) return defaultResult;
+                fallbackBiomes = layers.biomes(surface);
+            }
+            return floor(palette, seaDepth, layers.exists(floor), layers.depths(floor), layers.blocks(floor), fallbackBiomes);
+        }
+        L surface = layers.surface(chunk);
+        if (surface == null) return defaultResult;
+        return surface(palette, defaultTile, checkRavines, topY, seaLevel, layers.exists(surface), layers.depths(surface), layers.waterDepths(surface), layers.blocks(surface), layers.biomes(surface));
+    }
+
+    /**
+     * @return the elevation row for a column's height relative to sea level.
+     */
+    public static int elevation(int blocksAboveSea) {
+        if (blocksAboveSea < 10) {
+            return 0;
+        } else if (blocksAboveSea < 20) {
+            return 1;
+        } else if (blocksAboveSea < 35) {
+            return 2;
+        } else if (blocksAboveSea < 50) {
+            return 3;
+        } else {
+            return 4;
+        }
+    }
+
+    /**
+     * @return a cleared histogram with room for {@code stride} tiles per row.
+     */
+    private static int[] histogram(int stride) {
+        int[] histogram = HISTOGRAM.get();
+        int size = ROWS * stride;
+        if (histogram.length < size) {
+            histogram = new int[Math.max(size, histogram.length * 2)];
+            HISTOGRAM.set(histogram);
+        } else {
+            Arrays.fill(histogram, 0, size, 0);
+        }
+        return histogram;
+    }
+
+    private static int best(int[] histogram, int stride) {
+        int bestIndex = -1;
+        int bestFrequency = 0;
+        for (int i = 0; i < ROWS * stride; i++) {
+            if (histogram[i] > bestFrequency) {
+                bestIndex = i;
+                bestFrequency = histogram[i];
+            }
+        }
+        return bestIndex;
+    }
+
+    /**
+     * Votes on the surface layer - elevation by height, with water, ice, lava and ravines standing out.
+     */
+    public static int surface(Palette palette, int defaultTile, boolean checkRavines, int worldHeight, int seaLevel, BitSet exists, int[] depths, int[] waterDepths, int[] blocks, int[] biomes) {
+        int stride = palette.stride();
+        int[] histogram = histogram(stride);
+        int noElevation = NO_ELEVATION * stride;
+        int custom = noElevation + palette.biomePriorities().length;
+        int[] biomePriorities = palette.biomePriorities();
+        boolean[] swampBiomes = palette.swampBiomes();
+        byte[] blockKinds = palette.blockKinds();
+
+        for (int i = 0; i < depths.length; i++) {
+            if (!exists.get(i)) {
+                histogram[noElevation + defaultTile] += EMPTY_PRIORITY;
+                continue;
+            }
+            int height = worldHeight - depths[i] + waterDepths[i];
+            byte block = blockKinds[blocks[i]];
+            int biome = biomes[i];
+
+            if (checkRavines && height - seaLevel < -7) {
+                histogram[custom + RAVINE_TILE] += RAVINE_PRIORITY;
+            } else if (waterDepths[i] > 0) {
+                histogram[custom + (swampBiomes[biome] ? SWAMP_WATER_TILE : WATER_TILE)] += WATER_PRIORITY;
+            } else if (block == ICE_BLOCK) {
+                histogram[custom + ICE_TILE] += ICE_PRIORITY;
+            } else if (block == LAVA_BLOCK) {
+                histogram[custom + LAVA_TILE] += LAVA_PRIORITY;
+            }
+            histogram[elevation(height - seaLevel) * stride + biome] += biomePriorities[biome];
+        }
+
+        return best(histogram, stride);
+    }
+
+    /**
+     * Votes on biomes alone, without elevation.
+     */
+    public static int biomes(Palette palette, int defaultTile, BitSet exists, int[] biomes) {
+        int stride = palette.stride();
+        int[] histogram = histogram(stride);
+        int noElevation = NO_ELEVATION * stride;
+        int[] biomePriorities = palette.biomePriorities();
+        for (int i = 0; i < biomes.length; i++) {
+            if (!exists.get(i)) {
+                histogram[noElevation + defaultTile] += EMPTY_PRIORITY;
+            } else {
+                histogram[noElevation + biomes[i]] += biomePriorities[biomes[i]];
+            }
+        }
+        return best(histogram, stride);
+    }
+
+    /**
+     * @return whether {@link #floor} needs fallback biomes - if any column's floor is missing or too deep.
+     */
+    public static boolean floorNeedsBiomes(int seaDepth, BitSet exists, int[] depths) {
+        for (int i = 0; i < depths.length; i++) {
+            if (!exists.get(i) || depths[i] > seaDepth) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Votes on a low floor layer - lava seas and shores, falling back to another layer's biomes where the floor is missing or too deep.
+     *
+     * @param fallbackBiomes the biomes to use for such columns - may be null only if {@link #floorNeedsBiomes} is false.
+     */
+    public static int floor(Palette palette, int seaDepth, BitSet exists, int[] depths, int[] blocks, @Nullable int[] fallbackBiomes) {
+        int stride = palette.stride();
+        int[] histogram = histogram(stride);
+        int noElevation = NO_ELEVATION * stride;
+        int custom = noElevation + palette.biomePriorities().length;
+        int[] biomePriorities = palette.biomePriorities();
+        byte[] blockKinds = palette.blockKinds();
+
+        for (int i = 0; i < depths.length; i++) {
+            if (!exists.get(i) || depths[i] > seaDepth) {
+                histogram[noElevation + fallbackBiomes[i]] += biomePriorities[fallbackBiomes[i]];
+            } else if (blockKinds[blocks[i]] == LAVA_BLOCK) { // Lava Sea
+                histogram[custom + LAVA_TILE] += LAVA_PRIORITY;
+            } else { // Low Floor
+                histogram[custom + LAVA_SHORE_TILE] += BEACH_PRIORITY;
+            }
+        }
+
+        return best(histogram, stride);
+    }
+}
@@ -0,0 +1,27 @@
+package folk.sisby.antique_atlas.util;
+
+/**
+ * Tracks the recent cost of a repeated task, so a tick can run as many as fit into a time budget.
+ */
+public class TickBudget {
+    private static final double SMOOTHING = 0.1;
+
+    private double averageNanos = 0;
+
+    /**
+     * @return whether another run is expected to finish within the budget.
+     */
+    public boolean fits(long elapsedNanos, long budgetNanos) {
+        return elapsedNanos + averageNanos <= budgetNanos;
+    }
+
+    public void record(long nanos, int runs) {
+        if (runs == 0) return;
+        double cost = (double) nanos / runs;
+        averageNanos = averageNanos == 0 ? cost : averageNanos + SMOOTHING * (cost - averageNanos);
+    }
+
+    public long getAverageNanos() {
+        return (long) averageNanos;
+    }
+}
@@ -0,0 +1,136 @@
+package folk.sisby.antique_atlas.util;
+
+import folk.sisby.antique_atlas.gui.tiles.TileConnectivity;
+import folk.sisby.antique_atlas.gui.tiles.TileShapes;
+import folk.sisby.antique_atlas.gui.tiles.TileSource;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The tile textures of one world - terrain tiles, with structure tiles drawn over them where the terrain is known.
+ * Keeps the zoomed-out pyramid, the explored bounds and (given a connectivity) the stitched shapes up to date as tiles are set.
+ */
+public class TileMap implements TileSource {
+    private final TileStore terrainTiles = new TileStore();
+    private final TileStore structureTiles = new TileStore();
+    private final TilePyramid pyramid = new TilePyramid(this::getTileId);
+    private final Rect scope = new Rect(0, 0, 0, 0);
+    private final @Nullable TileShapes shapes;
+    private short[] structureWindow = new short[0];
+
+    public TileMap() {
+        this(null);
+    }
+
+    /**
+     * @param connectivity how tiles stitch, for caching their shapes - or null to leave stitching to the renderer.
+     */
+    public TileMap(@Nullable TileConnectivity connectivity) {
+        this.shapes = connectivity == null ? null : new TileShapes(pyramid, connectivity);
+    }
+
+    /**
+     * Terrain texture IDs. Writing to these directly requires a {@link #rebuild()} afterwards.
+     */
+    public TileStore getTerrain() {
+        return terrainTiles;
+    }
+
+    /**
+     * Structure texture IDs. Writing to these directly requires a {@link #rebuild()} afterwards.
+     */
+    public TileStore getStructures() {
+        return structureTiles;
+    }
+
+    public void setTerrain(int x, int z, short tile) {
+        scope.extendTo(x, z);
+        terrainTiles.set(x, z, tile);
+        update(x, z);
+    }
+
+    public void setStructure(int x, int z, short tile) {
+        structureTiles.set(x, z, tile);
+        update(x, z);
+    }
+
+    private void update(int x, int z) {
+        int changedLevels = pyramid.update(x, z);
+        if (shapes != null) shapes.invalidate(x, z, changedLevels);
+    }
+
+    public short getTileId(int x, int z) {
+        short terrain = terrainTiles.get(x, z);
+        if (terrain == TileStore.EMPTY) return TileStore.EMPTY;
+        short structure = structureTiles.get(x, z);
+        return structure == TileStore.EMPTY ? terrain : structure;
+    }
+
+    @Override
+    public short getTileId(int x, int z, int step) {
+        int level = Math.min(Integer.numberOfTrailingZeros(step), TilePyramid.LEVELS);
+        return pyramid.get(level, x >> level, z >> level);
+    }
+
+    @Override
+    public short getShapes(int x, int z, int step) {
+        int level = Integer.numberOfTrailingZeros(step);
+        if (shapes == null || level > TilePyramid.LEVELS) return TileShapes.UNKNOWN;
+        return shapes.get(level, x >> level, z >> level);
+    }
+
+    @Override
+    public long getRevision(int regionX, int regionZ, int step) {
+        int level = Integer.numberOfTrailingZeros(step);
+        if (shapes == null || step != 1 << level || level > TilePyramid.LEVELS) return -1;
+        return shapes.getRevision(level, regionX, regionZ);
+    }
+
+    /**
+     * Copies whole rows of pages at a time for the pyramid's levels, rather than looking up each tile.
+     */
+    @Override
+    public void getTileIds(int x, int z, int width, int height, int step, short[] out) {
+        int level = Integer.numberOfTrailingZeros(step);
+        if (step != 1 << level || level > TilePyramid.LEVELS) {
+            TileSource.super.getTileIds(x, z, width, height, step, out);
+        } else if (level > 0) {
+            pyramid.copyArea(level, x >> level, z >> level, width, height, out);
+        } else {
+            int size = width * height;
+            if (structureWindow.length < size) structureWindow = new short[size];
+            terrainTiles.copyArea(x, z, width, height, out);
+            structureTiles.copyArea(x, z, width, height, structureWindow);
+            for (int i = 0; i < size; i++) {
+                if (out[i] != TileStore.EMPTY && structureWindow[i] != TileStore.EMPTY) out[i] = structureWindow[i];
+            }
+        }
+    }
+
+    @Override
+    public void getShapes(int x, int z, int width, int height, int step, short[] tileIds, short[] out) {
+        int level = Integer.numberOfTrailingZeros(step);
+        if (shapes == null || step != 1 << level || level > TilePyramid.LEVELS) {
+            TileSource.super.getShapes(x, z, width, height, step, tileIds, out);
+        } else {
+            shapes.copyArea(level, x >> level, z >> level, width, height, tileIds, out);
+        }
+    }
+
+    @Override
+    public Rect getScope() {
+        return scope;
+    }
+
+    /**
+     * Recomputes the pyramid from scratch, e.g. after textures were remapped in place.
+     */
+    public void rebuild() {
+        pyramid.clear();
+        if (shapes != null) shapes.clear();
+        terrainTiles.forEachRegion((regionX, regionZ, textures) -> {
+            for (int i = 0; i < textures.length; i++) {
+                if (textures[i] != TileStore.EMPTY) pyramid.update(regionX << TileStore.REGION_POWER | (i & TileStore.REGION_MASK), regionZ << TileStore.REGION_POWER | (i >> TileStore.REGION_POWER));
+            }
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package folk.sisby.antique_atlas.util;
+
+/**
+ * Downsampled copies of a tile layer for viewing the map zoomed out.
+ * Each level halves the resolution of the one below it, so a cell at level n covers 2^n x 2^n chunks.
+ * Cells hold the most common tile of their four children, with ties going to the earliest in row order.
+ * Updating a chunk only revisits the cells above it, and stops as soon as a cell is unchanged.
+ */
+public class TilePyramid {
+    public static final int LEVELS = 6;
+
+    public interface Layer {
+        short get(int x, int z);
+    }
+
+    private final Layer base;
+    private final TileStore[] levels = new TileStore[LEVELS];
+
+    public TilePyramid(Layer base) {
+        this.base = base;
+        for (int i = 0; i < LEVELS; i++) {
+            levels[i] = new TileStore();
+        }
+    }
+
+    /**
+     * @param x the cell X at the given level, i.e. chunk X >> level.
+     * @param z the cell Z at the given level, i.e. chunk Z >> level.
+     */
+    public short get(int level, int x, int z) {
+        return level == 0 ? base.get(x, z) : levels[level - 1].get(x, z);
+    }
+
+    /**
+     * Copies an area of a level like {@link TileStore#copyArea(int, int, int, int, short[])}.
+     */
+    public void copyArea(int level, int x, int z, int width, int height, short[] out) {
+        if (level > 0) {
+            levels[level - 1].copyArea(x, z, width, height, out);
+            return;
+        }
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                out[row * width + column] = base.get(x + column, z + row);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the cells above a chunk after its tile changed.
+     *
+     * @return the highest level whose cell changed - 0 if none did.
+     */
+    public int update(int x, int z) {
+        for (int level = 1; level <= LEVELS; level++) {
+            x >>= 1;
+            z >>= 1;
+            int childX = x << 1;
+            int childZ = z << 1;
+            short value = vote(get(level - 1, childX, childZ), get(level - 1, childX + 1, childZ), get(level - 1, childX, childZ + 1), get(level - 1, childX + 1, childZ + 1));
+            if (levels[level - 1].set(x, z, value) == value) return level - 1;
+        }
+        return LEVELS;
+    }
+
+    private static short vote(short a, short b, short c, short d) {
+        int countA = a == TileStore.EMPTY ? 0 : 1 + (a == b ? 1 : 0) + (a == c ? 1 : 0) + (a == d ? 1 : 0);
+        int countB = b == TileStore.EMPTY ? 0 : 1 + (b == c ? 1 : 0) + (b == d ? 1 : 0);
+        int countC = c == TileStore.EMPTY ? 0 : 1 + (c == d ? 1 : 0);
+        int countD = d == TileStore.EMPTY ? 0 : 1;
+        if (countA >= countB && countA >= countC && countA >= countD) return countA == 0 ? TileStore.EMPTY : a;
+        if (countB >= countC && countB >= countD) return b;
+        return countC >= countD ? c : d;
+    }
+
+    public void clear() {
+        for (TileStore level : levels) {
+            level.clear();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package folk.sisby.antique_atlas.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Stores one short per chunk, paged into 32x32 chunk regions.
+ * Pages are keyed by their packed region coordinate and only allocated once something is written into them.
+ */
+public class TileStore {
+    public static final int REGION_POWER = 5;
+    public static final int REGION_SIZE = 1 << REGION_POWER;
+    public static final int REGION_MASK = REGION_SIZE - 1;
+    public static final int PAGE_SIZE = REGION_SIZE * REGION_SIZE;
+    public static final short EMPTY = -1;
+
+    private final Long2ObjectMap<short[]> pages = new Long2ObjectOpenHashMap<>();
+    private long lastKey;
+    private short[] lastPage = null;
+    private int size = 0;
+
+    /**
+     * Index of a chunk within its region page. Rows along X are contiguous.
+     */
+    public static int index(int x, int z) {
+        return (z & REGION_MASK) << REGION_POWER | (x & REGION_MASK);
+    }
+
+    /**
+     * Index of a chunk in Surveyor's region bitsets - unlike {@link #index(int, int)}, columns along Z are contiguous.
+     */
+    public static int regionBit(int x, int z) {
+        return (x & REGION_MASK) << REGION_POWER | (z & REGION_MASK);
+    }
+
+    /**
+     * Converts an index in Surveyor's region bitsets to the matching {@link #index(int, int)}.
+     */
+    public static int fromRegionBit(int bit) {
+        return (bit & REGION_MASK) << REGION_POWER | (bit >> REGION_POWER);
+    }
+
+    private short[] getPage(long key) {
+        if (lastPage != null && lastKey == key) return lastPage;
+        short[] page = pages.get(key);
+        if (page != null) {
+            lastKey = key;
+            lastPage = page;
+        }
+        return page;
+    }
+
+    public short get(int x, int z) {
+        short[] page = getPage(MathUtil.packXZ(x >> REGION_POWER, z >> REGION_POWER));
+        return page == null ? EMPTY : page[index(x, z)];
+    }
+
+    public boolean contains(int x, int z) {
+        return get(x, z) != EMPTY;
+    }
+
+    /**
+     * @return the value previously stored for the chunk.
+     */
+    public short set(int x, int z, short value) {
+        long key = MathUtil.packXZ(x >> REGION_POWER, z >> REGION_POWER);
+        short[] page = getPage(key);
+        if (page == null) {
+            if (value == EMPTY) return EMPTY;
+            page = new short[PAGE_SIZE];
+            Arrays.fill(page, EMPTY);
+            pages.put(key, page);
+            lastKey = key;
+            lastPage = page;
+        }
+        int index = index(x, z);
+        short old = page[index];
+        page[index] = value;
+        if (old == EMPTY && value != EMPTY) size++;
+        if (old != EMPTY && value == EMPTY) size--;
+        return old;
+    }
+
+    /**
+     * @return the backing page for a region, or null if nothing has been written to it.
+     */
+    public short[] getRegion(int regionX, int regionZ) {
+        return getPage(MathUtil.packXZ(regionX, regionZ));
+    }
+
+    /**
+     * Copies an area into a row-major array, looking up each page it overlaps once.
+     *
+     * @param out at least {@code width * height} long.
+     */
+    public void copyArea(int minX, int minZ, int width, int height, short[] out) {
+        int maxX = minX + width - 1;
+        int maxZ = minZ + height - 1;
+        for (int regionZ = minZ >> REGION_POWER; regionZ <= maxZ >> REGION_POWER; regionZ++) {
+            int startZ = Math.max(minZ, regionZ << REGION_POWER);
+            int endZ = Math.min(maxZ, regionZ << REGION_POWER | REGION_MASK);
+            for (int regionX = minX >> REGION_POWER; regionX <= maxX >> REGION_POWER; regionX++) {
+                int startX = Math.max(minX, regionX << REGION_POWER);
+                int length = Math.min(maxX, regionX << REGION_POWER | REGION_MASK) - startX + 1;
+                short[] page = getPage(MathUtil.packXZ(regionX, regionZ));
+                for (int z = startZ; z <= endZ; z++) {
+                    int offset = (z - minZ) * width + startX - minX;
+                    if (page == null) {
+                        Arrays.fill(out, offset, offset + length, EMPTY);
+                    } else {
+                        System.arraycopy(page, index(startX, z), out, offset, length);
+                    }
+                }
+            }
+        }
+    }
+
+    public interface RegionConsumer {
+        void accept(int regionX, int regionZ, short[] page);
+    }
+
+    public void forEachRegion(RegionConsumer consumer) {
+        for (Long2ObjectMap.Entry<short[]> entry : pages.long2ObjectEntrySet()) {
+            consumer.accept(MathUtil.unpackX(entry.getLongKey()), MathUtil.unpackZ(entry.getLongKey()), entry.getValue());
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        pages.clear();
+        lastPage = null;
+        size = 0;
+    }
+}
@@ -0,0 +1,233 @@
+package folk.sisby.antique_atlas.util;
+
+import folk.sisby.antique_atlas.gui.tiles.TileConnectivity;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The tiles of one world and how they get there - explored chunks wait in a {@link PendingChunks} queue, are polled in batches of one region
+ * for classification, and land in a {@link TileMap} along with the terrain they were classified as. Structures are laid over the terrain by priority.
+ * Providers are plain indices here, with their textures looked up by the owner - so this runs the same against Surveyor or a recorded corpus.
+ */
+public class WorldTiles {
+    /**
+     * Terrain values pack the provider index above 3 bits of elevation into a short, which bounds the providers per world.
+     */
+    public static final int MAX_PROVIDERS = 1 << 12;
+    public static final int NO_ELEVATION = -1;
+
+    @FunctionalInterface
+    public interface TextureLookup {
+        /**
+         * @param elevation the elevation index, or {@link #NO_ELEVATION}.
+         */
+        short getTexture(int provider, int x, int z, int elevation);
+    }
+
+    @FunctionalInterface
+    public interface Budget {
+        /**
+         * @param polled  the chunks polled so far.
+         * @param batched the chunks polled into the current batch, not yet handed over.
+         * @return whether another chunk can be polled.
+         */
+        boolean fits(int polled, int batched);
+    }
+
+    @FunctionalInterface
+    public interface RegionTiler {
+        /**
+         * @param chunks the chunks to tile, as a Surveyor region bitset - only valid during the call.
+         */
+        void tile(int regionX, int regionZ, BitSet chunks);
+    }
+
+    private final TileMap tiles;
+    private final TextureLookup textures;
+    private final TileStore terrainTiles = new TileStore();
+    private final PendingChunks pendingChunks = new PendingChunks();
+    private final LongSet cachedChunks = new LongOpenHashSet();
+    private final LongSet dirtyRegions = new LongOpenHashSet();
+    private final TileStore structureProviderTiles = new TileStore();
+    private final IntArrayList structurePriorities = new IntArrayList();
+    private final long[] pending = new long[TileStore.PAGE_SIZE / Long.SIZE];
+    private final BitSet batch = new BitSet(TileStore.PAGE_SIZE);
+
+    /**
+     * @param connectivity how tiles stitch, for caching their shapes - or null to leave stitching to the renderer.
+     */
+    public WorldTiles(@Nullable TileConnectivity connectivity, TextureLookup textures) {
+        this.tiles = new TileMap(connectivity);
+        this.textures = textures;
+    }
+
+    /**
+     * Packs a provider index and elevation (shifted so that none is 0) into one short.
+     * This allows 4096 providers per world - far more than there are biomes.
+     */
+    public static short packTerrain(int provider, int elevation) {
+        if (provider < 0 || provider >= MAX_PROVIDERS) throw new IllegalArgumentException("Provider index " + provider + " doesn't fit in a terrain value");
+        return (short) (provider << 3 | (elevation + 1));
+    }
+
+    public static int terrainProvider(short terrain) {
+        return terrain >> 3;
+    }
+
+    public static int terrainElevation(short terrain) {
+        return (terrain & 7) - 1;
+    }
+
+    public TileMap getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Terrain values from {@link #packTerrain}, for each tiled chunk.
+     */
+    public TileStore getTerrain() {
+        return terrainTiles;
+    }
+
+    public PendingChunks getPending() {
+        return pendingChunks;
+    }
+
+    /**
+     * Regions with chunks tiled since they were last cleared, i.e. those that need writing to a cache.
+     */
+    public LongSet getDirtyRegions() {
+        return dirtyRegions;
+    }
+
+    /**
+     * Queues a region's explored chunks for tiling, except those already tiled.
+     * Chunks with cached terrain are tiled from it straight away, then re-tiled the first time they're reported updated.
+     *
+     * @param chunks the region's chunks, as a Surveyor region bitset.
+     * @param cached terrain values from {@link #packTerrain} indexed by {@link TileStore#index(int, int)}, or -1 - or null without a cache.
+     * @return the number of chunks loaded from the cache.
+     */
+    public int queueRegion(int regionX, int regionZ, BitSet chunks, @Nullable short[] cached) {
+        Arrays.fill(pending, 0);
+        int loaded = 0;
+        for (int bit = chunks.nextSetBit(0); bit >= 0; bit = chunks.nextSetBit(bit + 1)) {
+            int index = TileStore.fromRegionBit(bit);
+            int x = regionX << TileStore.REGION_POWER | (index & TileStore.REGION_MASK);
+            int z = regionZ << TileStore.REGION_POWER | (index >> TileStore.REGION_POWER);
+            if (tiles.getTerrain().contains(x, z)) continue;
+            if (cached != null && cached[index] != TileStore.EMPTY) {
+                putTerrain(x, z, cached[index]);
+                cachedChunks.add(MathUtil.packXZ(x, z));
+                loaded++;
+                continue;
+            }
+            pending[index >> 6] |= 1L << index;
+        }
+        pendingChunks.addRegion(regionX, regionZ, pending);
+        return loaded;
+    }
+
+    /**
+     * Queues a chunk that was explored or changed.
+     */
+    public void onTerrainUpdated(int x, int z) {
+        // Cached tiles may be out of date, so re-tile them the first time they're reported.
+        if (!tiles.getTerrain().contains(x, z) || cachedChunks.remove(MathUtil.packXZ(x, z))) pendingChunks.add(x, z);
+    }
+
+    /**
+     * Polls pending chunks nearest-first, handing them over in batches of one region so they can share the region's palettes.
+     *
+     * @return the number of chunks polled.
+     */
+    public int poll(Budget budget, RegionTiler tiler) {
+        int polled = 0;
+        int batched = 0;
+        long batchRegion = 0;
+        while (!pendingChunks.isEmpty() && budget.fits(polled, batched)) {
+            long packedPos = pendingChunks.poll();
+            int x = MathUtil.unpackX(packedPos);
+            int z = MathUtil.unpackZ(packedPos);
+            long region = MathUtil.packXZ(x >> TileStore.REGION_POWER, z >> TileStore.REGION_POWER);
+            if (batched > 0 && region != batchRegion) {
+                tiler.tile(MathUtil.unpackX(batchRegion), MathUtil.unpackZ(batchRegion), batch);
+                batch.clear();
+                batched = 0;
+            }
+            batchRegion = region;
+            batch.set(TileStore.regionBit(x, z));
+            batched++;
+            polled++;
+        }
+        if (batched > 0) {
+            tiler.tile(MathUtil.unpackX(batchRegion), MathUtil.unpackZ(batchRegion), batch);
+            batch.clear();
+        }
+        return polled;
+    }
+
+    /**
+     * Sets a chunk's classified terrain, marking its region dirty.
+     *
+     * @param elevation the elevation index, or {@link #NO_ELEVATION}.
+     */
+    public void setTerrain(int x, int z, int provider, int elevation) {
+        putTerrain(x, z, packTerrain(provider, elevation));
+        dirtyRegions.add(MathUtil.packXZ(x >> TileStore.REGION_POWER, z >> TileStore.REGION_POWER));
+    }
+
+    private void putTerrain(int x, int z, short terrain) {
+        terrainTiles.set(x, z, terrain);
+        tiles.setTerrain(x, z, textures.getTexture(terrainProvider(terrain), x, z, terrainElevation(terrain)));
+    }
+
+    /**
+     * @return the index to place the provider's structures with.
+     */
+    public int addStructureProvider(int priority) {
+        structurePriorities.add(priority);
+        return structurePriorities.size() - 1;
+    }
+
+    /**
+     * Places a structure tile, unless the chunk already shows a structure with a higher priority - i.e. a lower value.
+     *
+     * @return whether the tile was placed.
+     */
+    public boolean setStructure(int x, int z, int provider, short texture) {
+        short existing = structureProviderTiles.get(x, z);
+        if (existing != TileStore.EMPTY && structurePriorities.getInt(existing) < structurePriorities.getInt(provider)) return false;
+        structureProviderTiles.set(x, z, (short) provider);
+        tiles.setStructure(x, z, texture);
+        return true;
+    }
+
+    /**
+     * @return the provider of the structure shown in a chunk, or -1.
+     */
+    public int getStructureProvider(int x, int z) {
+        return structureProviderTiles.get(x, z);
+    }
+
+    /**
+     * Looks up every terrain texture again from the stored terrain, e.g. after the providers or textures changed.
+     */
+    public void retexture() {
+        terrainTiles.forEachRegion((regionX, regionZ, terrain) -> {
+            short[] regionTextures = tiles.getTerrain().getRegion(regionX, regionZ);
+            for (int i = 0; i < terrain.length; i++) {
+                if (terrain[i] == TileStore.EMPTY) continue;
+                int x = regionX << TileStore.REGION_POWER | (i & TileStore.REGION_MASK);
+                int z = regionZ << TileStore.REGION_POWER | (i >> TileStore.REGION_POWER);
+                regionTextures[i] = textures.getTexture(terrainProvider(terrain[i]), x, z, terrainElevation(terrain[i]));
+            }
+        });
+        tiles.rebuild();
+    }
+}
@@ -0,0 +1,54 @@
+package folk.sisby.antique_atlas.gui.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectivityMatrixTest {
+    /**
+     * Tiles connect within groups of 5, horizontally within groups of 3, and vertically to odd IDs.
+     */
+    private static final TileConnectivity SOURCE = new TileConnectivity() {
+        @Override
+        public boolean tiles(short tile, short to) {
+            return tile / 5 == to / 5;
+        }
+
+        @Override
+        public boolean tilesHorizontally(short tile, short to) {
+            return tile / 3 == to / 3;
+        }
+
+        @Override
+        public boolean tilesVertically(short tile, short to) {
+            return tile == to || (to & 1) == 1;
+        }
+    };
+
+    @Test
+    void matchesItsSource() {
+        // Wider than one word per row.
+        ConnectivityMatrix matrix = ConnectivityMatrix.of(SOURCE, 130);
+        assertEquals(130, matrix.size());
+        for (short tile = 0; tile < 130; tile++) {
+            for (short to = 0; to < 130; to++) {
+                assertEquals(SOURCE.tiles(tile, to), matrix.tiles(tile, to));
+                assertEquals(SOURCE.tilesHorizontally(tile, to), matrix.tilesHorizontally(tile, to));
+                assertEquals(SOURCE.tilesVertically(tile, to), matrix.tilesVertically(tile, to));
+            }
+        }
+    }
+
+    @Test
+    void outsideIdsOnlyTileToThemselves() {
+        ConnectivityMatrix matrix = ConnectivityMatrix.of(SOURCE, 130);
+        assertTrue(matrix.tiles((short) 200, (short) 200));
+        assertFalse(matrix.tiles((short) 200, (short) 201));
+        assertFalse(matrix.tilesVertically((short) 128, (short) 131));
+        assertFalse(matrix.tilesHorizontally((short) 129, (short) 130));
+        assertTrue(matrix.tilesHorizontally((short) -1, (short) -1));
+        assertFalse(matrix.tiles((short) -1, (short) 0));
+    }
+}
@@ -0,0 +1,115 @@
+package folk.sisby.antique_atlas.gui.tiles;
+
+import folk.sisby.antique_atlas.gui.tiles.SubTile.Shape;
+import folk.sisby.antique_atlas.util.TilePyramid;
+import folk.sisby.antique_atlas.util.TileStore;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class TileShapesTest {
+    private static final TileConnectivity SAME = new TileConnectivity() {
+        @Override
+        public boolean tiles(short tile, short to) {
+            return tile == to;
+        }
+
+        @Override
+        public boolean tilesHorizontally(short tile, short to) {
+            return tile == to;
+        }
+
+        @Override
+        public boolean tilesVertically(short tile, short to) {
+            return tile == to;
+        }
+    };
+
+    private final TileStore base = new TileStore();
+    private final TilePyramid pyramid = new TilePyramid(base::get);
+    private final TileShapes shapes = new TileShapes(pyramid, SAME);
+
+    private void set(int x, int z, int tile) {
+        base.set(x, z, (short) tile);
+        shapes.invalidate(x, z, pyramid.update(x, z));
+    }
+
+    private static short all(Shape shape) {
+        return TileShapes.pack(shape, shape, shape, shape);
+    }
+
+    @Test
+    void stitchesNeighbours() {
+        assertEquals(TileShapes.NONE, shapes.get(0, 0, 0));
+        set(0, 0, 1);
+        assertEquals(all(Shape.SINGLE_OBJECT), shapes.get(0, 0, 0));
+        set(1, 0, 1);
+        set(-1, 0, 1);
+        assertEquals(all(Shape.HORIZONTAL), shapes.get(0, 0, 0));
+        for (int z = -1; z <= 1; z++) {
+            for (int x = -1; x <= 1; x++) {
+                set(x, z, 1);
+            }
+        }
+        assertEquals(all(Shape.FULL), shapes.get(0, 0, 0));
+        assertEquals(TileShapes.pack(Shape.CONVEX, Shape.HORIZONTAL, Shape.VERTICAL, Shape.FULL), shapes.get(0, -1, -1));
+    }
+
+    @Test
+    void invalidatesTheNeighbourhood() {
+        set(0, 0, 1);
+        set(3, 0, 1);
+        assertEquals(all(Shape.SINGLE_OBJECT), shapes.get(0, 0, 0));
+        assertEquals(all(Shape.SINGLE_OBJECT), shapes.get(0, 3, 0));
+        // Shapes stay cached until invalidated, even if the tiles underneath changed.
+        base.set(4, 0, (short) 1);
+        assertEquals(all(Shape.SINGLE_OBJECT), shapes.get(0, 3, 0));
+        // (3, 0) is outside (1, 0)'s neighbourhood, so it keeps its stale shapes.
+        set(1, 0, 1);
+        assertEquals(TileShapes.pack(Shape.CONVEX, Shape.HORIZONTAL, Shape.CONVEX, Shape.HORIZONTAL), shapes.get(0, 0, 0));
+        assertEquals(all(Shape.SINGLE_OBJECT), shapes.get(0, 3, 0));
+        shapes.invalidate(4, 0, 0);
+        assertEquals(TileShapes.pack(Shape.CONVEX, Shape.HORIZONTAL, Shape.CONVEX, Shape.HORIZONTAL), shapes.get(0, 3, 0));
+    }
+
+    @Test
+    void copyAreaMatchesGet() {
+        for (int x = -4; x < 4; x++) set(x, x & 1, 2);
+        short[] tileIds = new short[10 * 4];
+        short[] out = new short[10 * 4];
+        pyramid.copyArea(0, -5, -1, 10, 4, tileIds);
+        shapes.copyArea(0, -5, -1, 10, 4, tileIds, out);
+        for (int z = 0; z < 4; z++) {
+            for (int x = 0; x < 10; x++) {
+                assertEquals(shapes.get(0, x - 5, z - 1), out[z * 10 + x]);
+            }
+        }
+    }
+
+    @Test
+    void revisionsTrackChangedRegions() {
+        long origin = shapes.getRevision(0, 0, 0);
+        long corner = shapes.getRevision(0, -1, -1);
+        long far = shapes.getRevision(0, 1, 0);
+        set(0, 0, 1);
+        // The neighbourhood of (0, 0) crosses into the regions behind it.
+        assertNotEquals(origin, shapes.getRevision(0, 0, 0));
+        assertNotEquals(corner, shapes.getRevision(0, -1, -1));
+        assertEquals(far, shapes.getRevision(0, 1, 0));
+        assertNotEquals(0, shapes.getRevision(TilePyramid.LEVELS, 0, 0) & 0xFFFFFFFFL);
+
+        set(1, 0, 1);
+        set(0, 1, 2);
+        long level0 = shapes.getRevision(0, 0, 0);
+        long level1 = shapes.getRevision(1, 0, 0);
+        // Outvoted on level 1, so only level 0 changes.
+        set(1, 1, 3);
+        assertNotEquals(level0, shapes.getRevision(0, 0, 0));
+        assertEquals(level1, shapes.getRevision(1, 0, 0));
+
+        long before = shapes.getRevision(0, 5, 5);
+        shapes.clear();
+        assertNotEquals(before, shapes.getRevision(0, 5, 5));
+    }
+}
@@ -0,0 +1,135 @@
+package folk.sisby.antique_atlas.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogTest {
+    private static EventLog.Layer layer(int seed) {
+        BitSet exists = new BitSet(256);
+        exists.set(0, 256);
+        exists.clear(seed % 256);
+        int[] depths = new int[256];
+        int[] waterDepths = new int[256];
+        int[] blocks = new int[256];
+        int[] biomes = new int[256];
+        for (int i = 0; i < 256; i++) {
+            depths[i] = (i * seed) % 300 - 64;
+            waterDepths[i] = i % 7;
+            blocks[i] = i % 3;
+            biomes[i] = (i + seed) % 2;
+        }
+        return new EventLog.Layer(exists, depths, waterDepths, blocks, biomes);
+    }
+
+    private static void assertLayerEquals(EventLog.Layer expected, EventLog.Layer actual) {
+        assertEquals(expected.exists(), actual.exists());
+        assertArrayEquals(expected.depths(), actual.depths());
+        assertArrayEquals(expected.waterDepths(), actual.waterDepths());
+        assertArrayEquals(expected.blocks(), actual.blocks());
+        assertArrayEquals(expected.biomes(), actual.biomes());
+    }
+
+    @Test
+    void roundTrips() throws IOException {
+        EventLog.Header header = new EventLog.Header("minecraft:the_nether", 3, true, true, 128, 127, 31);
+        EventLog.Region region = new EventLog.Region(-2, 1, new String[]{"minecraft:nether_wastes", "minecraft:swamp"},
+            new TerrainHistogram.Palette(new int[]{1, 4}, new boolean[]{false, true}, new byte[]{0, 2, 5}),
+            List.of(
+                new EventLog.Chunk(-64, 32, layer(3), layer(5)),
+                new EventLog.Chunk(-33, 63, layer(7), null),
+                new EventLog.Chunk(-40, 40, null, null)
+            ));
+        EventLog.Structure structure = new EventLog.Structure("minecraft:fortress", -100, 20, List.of(
+            new EventLog.StructureTile(-101, 20, "antique_atlas:fortress_wall", 2),
+            new EventLog.StructureTile(-100, 21, "antique_atlas:fortress_wall", 2)
+        ));
+        EventLog.Landmark landmark = new EventLog.Landmark("minecraft:death", -5, -60, 12);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (EventLog.Writer writer = new EventLog.Writer(bytes, header)) {
+            writer.event(EventLog.WORLD_LOAD);
+            writer.count(1);
+            writer.region(region);
+            writer.count(1);
+            writer.structure(structure);
+            writer.count(1);
+            writer.landmark(landmark);
+            writer.event(EventLog.LANDMARKS_REMOVED);
+            writer.count(1);
+            writer.landmark(landmark);
+        }
+
+        List<EventLog.Region> regions = new ArrayList<>();
+        List<EventLog.Structure> structures = new ArrayList<>();
+        List<EventLog.Landmark> landmarks = new ArrayList<>();
+        EventLog.Listener listener = new EventLog.Listener() {
+            @Override
+            public void region(EventLog.Region region) {
+                regions.add(region);
+            }
+
+            @Override
+            public void structure(EventLog.Structure structure) {
+                structures.add(structure);
+            }
+
+            @Override
+            public void landmark(EventLog.Landmark landmark) {
+                landmarks.add(landmark);
+            }
+        };
+        try (EventLog.Reader reader = new EventLog.Reader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(header, reader.getHeader());
+            assertTrue(reader.next());
+            assertEquals(EventLog.WORLD_LOAD, reader.getType());
+            reader.read(listener);
+            assertTrue(reader.next());
+            assertEquals(EventLog.LANDMARKS_REMOVED, reader.getType());
+            reader.read(listener);
+            assertFalse(reader.next());
+        }
+
+        assertEquals(1, regions.size());
+        EventLog.Region read = regions.get(0);
+        assertEquals(region.regionX(), read.regionX());
+        assertEquals(region.regionZ(), read.regionZ());
+        assertArrayEquals(region.biomeIds(), read.biomeIds());
+        assertArrayEquals(region.palette().biomePriorities(), read.palette().biomePriorities());
+        assertArrayEquals(region.palette().swampBiomes(), read.palette().swampBiomes());
+        assertArrayEquals(region.palette().blockKinds(), read.palette().blockKinds());
+        assertEquals(region.chunks().size(), read.chunks().size());
+        for (int i = 0; i < region.chunks().size(); i++) {
+            EventLog.Chunk expected = region.chunks().get(i);
+            EventLog.Chunk actual = read.chunks().get(i);
+            assertEquals(expected.x(), actual.x());
+            assertEquals(expected.z(), actual.z());
+            if (expected.surface() == null) assertNull(actual.surface()); else assertLayerEquals(expected.surface(), actual.surface());
+            if (expected.floor() == null) assertNull(actual.floor()); else assertLayerEquals(expected.floor(), actual.floor());
+        }
+        assertEquals(List.of(structure), structures);
+        assertEquals(List.of(landmark, landmark), landmarks);
+    }
+
+    @Test
+    void rejectsOtherStreams() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(new byte[16]);
+        }
+        assertThrows(IOException.class, () -> new EventLog.Reader(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
@@ -0,0 +1,118 @@
+package folk.sisby.antique_atlas.util;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingChunksTest {
+    private static long distSq(long pos, int x, int z) {
+        long dx = MathUtil.unpackX(pos) - x;
+        long dz = MathUtil.unpackZ(pos) - z;
+        return dx * dx + dz * dz;
+    }
+
+    @Test
+    void deduplicatesChunks() {
+        PendingChunks pending = new PendingChunks();
+        assertTrue(pending.add(3, 4));
+        assertFalse(pending.add(3, 4));
+        long[] bits = new long[TileStore.PAGE_SIZE / Long.SIZE];
+        bits[0] = 0b111; // (0, 0), (1, 0) and (2, 0)
+        bits[TileStore.index(3, 4) >> 6] |= 1L << TileStore.index(3, 4);
+        assertEquals(3, pending.addRegion(0, 0, bits));
+        assertEquals(4, pending.size());
+        assertTrue(pending.contains(1, 0));
+        assertFalse(pending.contains(0, 1));
+    }
+
+    @Test
+    void pollsNearestFirst() {
+        PendingChunks pending = new PendingChunks();
+        pending.setFocus(0, 0, null);
+        pending.add(40, 0);
+        pending.add(-3, 2);
+        pending.add(1, 1);
+        pending.add(0, -70);
+        assertEquals(MathUtil.packXZ(1, 1), pending.poll());
+        assertEquals(MathUtil.packXZ(-3, 2), pending.poll());
+        assertEquals(MathUtil.packXZ(40, 0), pending.poll());
+        assertEquals(MathUtil.packXZ(0, -70), pending.poll());
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    void pollsViewportFirst() {
+        PendingChunks pending = new PendingChunks();
+        pending.setFocus(0, 0, new Rect(100, 100, 104, 104));
+        pending.add(0, 0);
+        pending.add(104, 104);
+        pending.add(102, 102);
+        pending.add(110, 110);
+        assertEquals(MathUtil.packXZ(102, 102), pending.poll());
+        assertEquals(MathUtil.packXZ(104, 104), pending.poll());
+        assertEquals(MathUtil.packXZ(0, 0), pending.poll());
+        assertEquals(MathUtil.packXZ(110, 110), pending.poll());
+    }
+
+    @Test
+    void refocusReordersPendingChunks() {
+        PendingChunks pending = new PendingChunks();
+        pending.setFocus(0, 0, null);
+        pending.add(0, 0);
+        pending.add(1, 0);
+        pending.add(100, 0);
+        assertEquals(MathUtil.packXZ(0, 0), pending.poll());
+        pending.setFocus(100, 0, null);
+        assertEquals(MathUtil.packXZ(100, 0), pending.poll());
+        assertEquals(MathUtil.packXZ(1, 0), pending.poll());
+    }
+
+    /**
+     * Adding to a region that's already sorted re-queues it, leaving its old heap entry behind - that entry must be skipped, not polled twice.
+     */
+    @Test
+    void skipsStaleEntries() {
+        PendingChunks pending = new PendingChunks();
+        pending.setFocus(0, 0, null);
+        pending.add(0, 0);
+        pending.add(5, 0);
+        pending.add(40, 0);
+        assertEquals(MathUtil.packXZ(0, 0), pending.poll());
+        pending.add(1, 0);
+        assertEquals(MathUtil.packXZ(1, 0), pending.poll());
+        assertEquals(MathUtil.packXZ(5, 0), pending.poll());
+        assertEquals(MathUtil.packXZ(40, 0), pending.poll());
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    void matchesBruteForceWithInterleavedAdds() {
+        Random random = new Random(42);
+        PendingChunks pending = new PendingChunks();
+        LongSet expected = new LongOpenHashSet();
+        pending.setFocus(7, -3, null);
+        for (int round = 0; round < 200; round++) {
+            for (int i = random.nextInt(20); i > 0; i--) {
+                int x = random.nextInt(200) - 100;
+                int z = random.nextInt(200) - 100;
+                assertEquals(expected.add(MathUtil.packXZ(x, z)), pending.add(x, z));
+            }
+            for (int i = random.nextInt(15); i > 0 && !pending.isEmpty(); i--) {
+                long polled = pending.poll();
+                long nearest = Long.MAX_VALUE;
+                for (long pos : expected) nearest = Math.min(nearest, distSq(pos, 7, -3));
+                assertTrue(expected.remove(polled), "polled a chunk that wasn't pending");
+                assertEquals(nearest, distSq(polled, 7, -3));
+            }
+            assertEquals(expected.size(), pending.size());
+        }
+        while (!pending.isEmpty()) assertTrue(expected.remove(pending.poll()));
+        assertTrue(expected.isEmpty());
+    }
+}
@@ -0,0 +1,84 @@
+package folk.sisby.antique_atlas.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TilePyramidTest {
+    private final TileStore base = new TileStore();
+    private final TilePyramid pyramid = new TilePyramid(base::get);
+
+    private int set(int x, int z, int tile) {
+        base.set(x, z, (short) tile);
+        return pyramid.update(x, z);
+    }
+
+    /**
+     * Fills the four chunks under a level 1 cell in row order.
+     */
+    private void setCell(int cellX, int cellZ, int a, int b, int c, int d) {
+        set(cellX * 2, cellZ * 2, a);
+        set(cellX * 2 + 1, cellZ * 2, b);
+        set(cellX * 2, cellZ * 2 + 1, c);
+        set(cellX * 2 + 1, cellZ * 2 + 1, d);
+    }
+
+    @Test
+    void majorityWins() {
+        setCell(0, 0, 3, 5, 3, TileStore.EMPTY);
+        assertEquals(3, pyramid.get(1, 0, 0));
+        setCell(1, 0, 4, 7, 7, 7);
+        assertEquals(7, pyramid.get(1, 1, 0));
+    }
+
+    @Test
+    void tiesGoToTheEarliest() {
+        setCell(0, 0, 5, 7, 7, 5);
+        assertEquals(5, pyramid.get(1, 0, 0));
+        setCell(1, 0, TileStore.EMPTY, 8, 9, TileStore.EMPTY);
+        assertEquals(8, pyramid.get(1, 1, 0));
+    }
+
+    @Test
+    void emptyChunksDontVote() {
+        setCell(0, 0, TileStore.EMPTY, TileStore.EMPTY, TileStore.EMPTY, 4);
+        assertEquals(4, pyramid.get(1, 0, 0));
+        set(1, 1, TileStore.EMPTY);
+        assertEquals(TileStore.EMPTY, pyramid.get(1, 0, 0));
+    }
+
+    @Test
+    void levelsVoteOnTheLevelBelow() {
+        setCell(0, 0, 1, 1, 1, 1);
+        setCell(1, 0, 2, 2, 2, 2);
+        setCell(0, 1, 2, 2, 2, 2);
+        setCell(1, 1, 3, 3, 3, 3);
+        assertEquals(2, pyramid.get(2, 0, 0));
+        assertEquals(2, pyramid.get(TilePyramid.LEVELS, 0, 0));
+        assertEquals(TileStore.EMPTY, pyramid.get(2, 1, 0));
+    }
+
+    @Test
+    void updateReportsTheHighestChangedLevel() {
+        assertEquals(TilePyramid.LEVELS, set(-1, -1, 6));
+        assertEquals(6, pyramid.get(TilePyramid.LEVELS, -1, -1));
+        assertEquals(0, set(-1, -1, 6));
+        assertEquals(TilePyramid.LEVELS, set(-2, -1, 8));
+        // Agrees with the level 1 cell - nothing above the chunk changes.
+        assertEquals(0, set(-2, -2, 8));
+    }
+
+    @Test
+    void copyAreaMatchesGet() {
+        for (int x = -10; x < 10; x++) {
+            set(x, x / 3, x & 3);
+        }
+        short[] out = new short[8 * 4];
+        pyramid.copyArea(1, -5, -3, 8, 4, out);
+        for (int z = 0; z < 4; z++) {
+            for (int x = 0; x < 8; x++) {
+                assertEquals(pyramid.get(1, x - 5, z - 3), out[z * 8 + x]);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package folk.sisby.antique_atlas.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TileStoreTest {
+    @Test
+    void setTracksSize() {
+        TileStore store = new TileStore();
+        assertEquals(TileStore.EMPTY, store.set(-1, 33, (short) 5));
+        assertEquals(5, store.set(-1, 33, (short) 6));
+        store.set(0, 0, (short) 1);
+        assertEquals(2, store.size());
+        store.set(0, 0, TileStore.EMPTY);
+        assertEquals(1, store.size());
+        assertEquals(6, store.get(-1, 33));
+    }
+
+    @Test
+    void regionBitsConvertToIndices() {
+        for (int z = 0; z < TileStore.REGION_SIZE; z++) {
+            for (int x = 0; x < TileStore.REGION_SIZE; x++) {
+                assertEquals(TileStore.index(x, z), TileStore.fromRegionBit(TileStore.regionBit(x, z)));
+            }
+        }
+    }
+
+    @Test
+    void copyAreaMatchesGetAcrossPages() {
+        Random random = new Random(7);
+        TileStore store = new TileStore();
+        for (int i = 0; i < 2000; i++) {
+            store.set(random.nextInt(96) - 48, random.nextInt(96) - 48, (short) random.nextInt(100));
+        }
+        int minX = -40;
+        int minZ = -37;
+        int width = 75;
+        int height = 70;
+        short[] out = new short[width * height];
+        store.copyArea(minX, minZ, width, height, out);
+        for (int z = 0; z < height; z++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(store.get(minX + x, minZ + z), out[z * width + x], "at " + (minX + x) + ", " + (minZ + z));
+            }
+        }
+    }
+
+    @Test
+    void copyAreaClearsMissingPages() {
+        TileStore store = new TileStore();
+        store.set(0, 0, (short) 3);
+        short[] out = new short[40 * 2];
+        java.util.Arrays.fill(out, (short) 9);
+        store.copyArea(-20, 0, 40, 2, out);
+        for (int i = 0; i < out.length; i++) {
+            assertEquals(i == 20 ? 3 : TileStore.EMPTY, out[i]);
+        }
+    }
+}
@@ -5,7 +5,9 @@ import folk.sisby.antique_atlas.gui.core.ScreenState;
 import folk.sisby.antique_atlas.reloader.BiomeTileProviders;
 import folk.sisby.antique_atlas.reloader.MarkerTextures;
 import folk.sisby.antique_atlas.reloader.StructureTileProviders;
+import folk.sisby.antique_atlas.reloader.TileSprites;
 import folk.sisby.antique_atlas.reloader.TileTextures;
+import folk.sisby.antique_atlas.reloader.WorldRetexturer;
 import folk.sisby.surveyor.WorldSummary;
 import folk.sisby.surveyor.client.SurveyorClientEvents;
 import net.fabricmc.api.ClientModInitializer;
@@ -37,19 +39,37 @@ public class AntiqueAtlas implements ClientModInitializer {
     public void onInitializeClient() {
         AntiqueAtlasKeybindings.init();
         ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(TileTextures.getInstance());
+        ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(TileSprites.getInstance());
         ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(StructureTileProviders.getInstance());
         ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(BiomeTileProviders.getInstance());
         ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(MarkerTextures.getInstance());
+        ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(WorldRetexturer.getInstance());
 
+        SurveyorClientEvents.Register.worldLoad(id("recorder"), EventRecorder::onLoad);
+        SurveyorClientEvents.Register.terrainUpdated(id("recorder"), EventRecorder::onTerrainUpdated);
+        SurveyorClientEvents.Register.structuresAdded(id("recorder"), EventRecorder::onStructuresAdded);
+        SurveyorClientEvents.Register.landmarksAdded(id("recorder"), EventRecorder::onLandmarksAdded);
+        SurveyorClientEvents.Register.landmarksRemoved(id("recorder"), EventRecorder::onLandmarksRemoved);
         SurveyorClientEvents.Register.worldLoad(id("world_data"), WorldAtlasData::onLoad);
         SurveyorClientEvents.Register.terrainUpdated(id("world_data"), (w, s, k) -> WorldAtlasData.getOrCreate(w).onTerrainUpdated(w, s, k));
         SurveyorClientEvents.Register.structuresAdded(id("world_data"), (w, s, k) -> WorldAtlasData.getOrCreate(w).onStructuresAdded(w, s, k));
         SurveyorClientEvents.Register.landmarksAdded(id("world_data"), (w, s, k) -> WorldAtlasData.getOrCreate(w).onLandmarksAdded(w, s, k));
         SurveyorClientEvents.Register.landmarksRemoved(id("world_data"), (w, s, k) -> WorldAtlasData.getOrCreate(w).onLandmarksRemoved(w, s, k));
-        ClientTickEvents.END_WORLD_TICK.register((w -> WorldAtlasData.getOrCreate(w).tick(w)));
-        CommonLifecycleEvents.TAGS_LOADED.register(((manager, client) -> BiomeTileProviders.getInstance().registerFallbacks(manager.get(RegistryKeys.BIOME))));
-        ClientPlayConnectionEvents.DISCONNECT.register(((handler, client) -> BiomeTileProviders.getInstance().clearFallbacks()));
-        ClientPlayConnectionEvents.DISCONNECT.register(((handler, client) -> WorldAtlasData.WORLDS.clear()));
+        ClientTickEvents.END_CLIENT_TICK.register((client -> { if (client.world != null) WorldAtlasData.getOrCreate(client.world).tick(client.world); }));
+        CommonLifecycleEvents.TAGS_LOADED.register(((manager, client) -> {
+            BiomeTable.getInstance().rebuild(manager.get(RegistryKeys.BIOME));
+            BiomeTileProviders.getInstance().registerFallbacks(manager.get(RegistryKeys.BIOME));
+            WorldAtlasData.WORLDS.values().forEach(WorldAtlasData::resolveProviders);
+        }));
+        ClientPlayConnectionEvents.DISCONNECT.register(((handler, client) -> {
+            BiomeTable.getInstance().clear();
+            BiomeTileProviders.getInstance().clearFallbacks();
+        }));
+        ClientPlayConnectionEvents.DISCONNECT.register(((handler, client) -> {
+            WorldAtlasData.WORLDS.values().forEach(WorldAtlasData::saveCache);
+            WorldAtlasData.WORLDS.clear();
+        }));
+        ClientPlayConnectionEvents.DISCONNECT.register(((handler, client) -> EventRecorder.closeAll()));
 
         WorldSummary.enableTerrain();
         WorldSummary.enableStructures();
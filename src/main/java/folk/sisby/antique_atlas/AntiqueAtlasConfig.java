@@ -54,8 +54,26 @@ public class AntiqueAtlasConfig extends WrappedConfig {
     @IntegerRange(min = -2, max = 10)
     public int mapScale = 0;
 
-    @Comment("The maximum number of chunks to load onto the map per tick after entering a world")
-    public int chunkTickLimit = 100;
+    @Comment("The time in microseconds to spend loading chunks onto the map each tick while it's open")
+    @IntegerRange(min = 100, max = 50000)
+    public int tickBudgetMicros = 2000;
+
+    @Comment("The time in microseconds to spend loading chunks onto the map each tick while it's closed or the game is paused")
+    @IntegerRange(min = 100, max = 50000)
+    public int idleTickBudgetMicros = 10000;
+
+    @Comment("The number of background threads used to turn terrain into tiles")
+    @Comment("0 will tile everything on the client thread")
+    @IntegerRange(min = 0, max = 8)
+    public int tilingThreads = 2;
+
+    @Comment("Whether to keep the map's tiles on the GPU between frames, only rebuilding the parts that change")
+    @Comment("Turn off if the map renders incorrectly with shader or rendering mods")
+    public boolean retainTileGeometry = true;
+
+    @Comment("Whether to keep the map's tiles as an image between frames, only redrawing the edges when panning")
+    @Comment("Faster on integrated graphics, especially in full-screen - uses some extra video memory")
+    public boolean cacheMapImage = false;
 
     @Comment("How to handle biomes that aren't in any minecraft, conventional, or forge biome tags")
     public FallbackHandling fallbackFailHandling = FallbackHandling.MISSING;
@@ -63,6 +81,10 @@ public class AntiqueAtlasConfig extends WrappedConfig {
     @Comment("Whether to show debug information about hovered tiles and markers")
     public boolean debugRender = false;
 
+    @Comment("Whether to record map events to antique_atlas/recordings, to attach to performance bug reports")
+    @Comment("Slows down loading considerably while enabled")
+    public boolean recordEvents = false;
+
     public Map<String, Boolean> structureMarkers = ValueMap.builder(true)
         .put("minecraft:type/end_city", false)
         .build();
@@ -0,0 +1,76 @@
+package folk.sisby.antique_atlas;
+
+import folk.sisby.antique_atlas.util.TerrainHistogram;
+import net.fabricmc.fabric.api.tag.convention.v1.ConventionalBiomeTags;
+import net.minecraft.registry.Registry;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.registry.tag.BiomeTags;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.biome.Biome;
+
+/**
+ * Everything tiling needs to know about a biome, indexed by raw registry ID.
+ * Rebuilt whenever tags load, so tiling never has to check tags itself.
+ */
+public class BiomeTable {
+    private static final BiomeTable INSTANCE = new BiomeTable();
+
+    public static final byte SWAMP = 1;
+    public static final byte BEACH = 1 << 1;
+    public static final byte NETHER = 1 << 2;
+
+    public static BiomeTable getInstance() {
+        return INSTANCE;
+    }
+
+    private Registry<Biome> registry = null;
+    private Identifier[] ids = new Identifier[0];
+    private int[] priorities = new int[0];
+    private byte[] flags = new byte[0];
+
+    public void rebuild(Registry<Biome> biomeRegistry) {
+        registry = biomeRegistry;
+        int size = biomeRegistry.size();
+        ids = new Identifier[size];
+        priorities = new int[size];
+        flags = new byte[size];
+        for (Biome biome : biomeRegistry) {
+            int rawId = biomeRegistry.getRawId(biome);
+            RegistryEntry<Biome> entry = biomeRegistry.getEntry(biome);
+            byte biomeFlags = 0;
+            if (entry.isIn(ConventionalBiomeTags.SWAMP)) biomeFlags |= SWAMP;
+            if (entry.isIn(BiomeTags.IS_BEACH)) biomeFlags |= BEACH;
+            if (entry.isIn(BiomeTags.IS_NETHER)) biomeFlags |= NETHER;
+            ids[rawId] = biomeRegistry.getId(biome);
+            flags[rawId] = biomeFlags;
+            priorities[rawId] = (biomeFlags & BEACH) != 0 ? TerrainHistogram.BEACH_PRIORITY : (biomeFlags & NETHER) != 0 ? 2 : 1;
+        }
+    }
+
+    /**
+     * @return the raw ID of the biome, rebuilding the table first if it doesn't cover the registry.
+     */
+    public int getRawId(Registry<Biome> biomeRegistry, Biome biome) {
+        if (registry != biomeRegistry || ids.length != biomeRegistry.size()) rebuild(biomeRegistry);
+        return biomeRegistry.getRawId(biome);
+    }
+
+    public Identifier getId(int rawId) {
+        return ids[rawId];
+    }
+
+    public int getPriority(int rawId) {
+        return priorities[rawId];
+    }
+
+    public boolean is(int rawId, byte flag) {
+        return (flags[rawId] & flag) != 0;
+    }
+
+    public void clear() {
+        registry = null;
+        ids = new Identifier[0];
+        priorities = new int[0];
+        flags = new byte[0];
+    }
+}
@@ -0,0 +1,186 @@
+package folk.sisby.antique_atlas;
+
+import com.google.common.collect.Multimap;
+import folk.sisby.antique_atlas.reloader.StructureTileProviders;
+import folk.sisby.antique_atlas.util.EventLog;
+import folk.sisby.antique_atlas.util.TerrainHistogram;
+import folk.sisby.antique_atlas.util.TileStore;
+import folk.sisby.surveyor.WorldSummary;
+import folk.sisby.surveyor.landmark.LandmarkType;
+import folk.sisby.surveyor.landmark.WorldLandmarks;
+import folk.sisby.surveyor.structure.WorldStructureSummary;
+import folk.sisby.surveyor.terrain.LayerSummary;
+import folk.sisby.surveyor.terrain.WorldTerrainSummary;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.gen.structure.Structure;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records Surveyor client events to an {@link EventLog} per dimension while {@link AntiqueAtlasConfig#recordEvents} is on,
+ * resolving the terrain and structures they point at so the log can be replayed without the game.
+ * Logs are written to {@code antique_atlas/recordings} and closed on disconnect.
+ */
+public class EventRecorder {
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+    private static final Map<RegistryKey<World>, EventLog.Writer> WRITERS = new HashMap<>();
+    private static final Set<RegistryKey<World>> FAILED = new HashSet<>();
+
+    private static @Nullable EventLog.Writer get(World world) {
+        if (!AntiqueAtlas.CONFIG.recordEvents || FAILED.contains(world.getRegistryKey())) return null;
+        return WRITERS.computeIfAbsent(world.getRegistryKey(), k -> {
+            Identifier dimension = k.getValue();
+            Path path = FabricLoader.getInstance().getGameDir().resolve(AntiqueAtlas.ID).resolve("recordings").resolve("%s_%s.aaevents".formatted(LocalDateTime.now().format(FILE_TIME), dimension.toUnderscoreSeparatedString()));
+            TerrainTiling.Context context = TerrainTiling.Context.of(world);
+            try {
+                Files.createDirectories(path.getParent());
+                EventLog.Writer writer = new EventLog.Writer(Files.newOutputStream(path), new EventLog.Header(dimension.toString(), context.defaultTile(), context.checkRavines(), context.nether(), context.topY(), context.netherMaxY(), context.seaLevel()));
+                AntiqueAtlas.LOGGER.info("[Antique Atlas] Recording events for {} to {}", dimension, path);
+                return writer;
+            } catch (IOException e) {
+                AntiqueAtlas.LOGGER.error("[Antique Atlas] Failed to start recording events to {}", path, e);
+                FAILED.add(k);
+                return null;
+            }
+        });
+    }
+
+    private interface Recording {
+        void write(EventLog.Writer writer) throws IOException;
+    }
+
+    private static void record(World world, Recording recording) {
+        EventLog.Writer writer = get(world);
+        if (writer == null) return;
+        try {
+            recording.write(writer);
+            writer.flush();
+        } catch (IOException e) {
+            AntiqueAtlas.LOGGER.error("[Antique Atlas] Failed to record events for {} - recording stopped.", world.getRegistryKey().getValue(), e);
+            FAILED.add(world.getRegistryKey());
+            close(WRITERS.remove(world.getRegistryKey()));
+        }
+    }
+
+    private static void close(EventLog.Writer writer) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            AntiqueAtlas.LOGGER.error("[Antique Atlas] Failed to finish recording events", e);
+        }
+    }
+
+    public static void closeAll() {
+        WRITERS.values().forEach(EventRecorder::close);
+        WRITERS.clear();
+        FAILED.clear();
+    }
+
+    private static @Nullable EventLog.Layer layer(@Nullable LayerSummary.Raw raw) {
+        return raw == null ? null : new EventLog.Layer(raw.exists(), raw.depths(), raw.waterDepths(), raw.blocks(), raw.biomes());
+    }
+
+    private static void writeRegions(EventLog.Writer writer, World world, Map<ChunkPos, BitSet> regions) throws IOException {
+        TerrainTiling.Context context = TerrainTiling.Context.of(world);
+        writer.count(regions.size());
+        for (Map.Entry<ChunkPos, BitSet> entry : regions.entrySet()) {
+            List<TerrainTiling.Snapshot> snapshots = TerrainTiling.snapshotRegion(world, entry.getKey(), entry.getValue());
+            if (snapshots.isEmpty()) {
+                writer.region(new EventLog.Region(entry.getKey().x, entry.getKey().z, new String[0], new TerrainHistogram.Palette(new int[0], new boolean[0], new byte[0]), List.of()));
+                continue;
+            }
+            List<EventLog.Chunk> chunks = new ArrayList<>(snapshots.size());
+            for (TerrainTiling.Snapshot snapshot : snapshots) {
+                // Same layers as TerrainTiling - the nether's full-height layer is recorded eagerly, as the replay can't ask for it later.
+                EventLog.Layer surface = layer(context.surface(snapshot.chunk()));
+                EventLog.Layer floor = context.nether() ? layer(context.floor(snapshot.chunk())) : null;
+                chunks.add(new EventLog.Chunk(snapshot.pos().x, snapshot.pos().z, surface, floor));
+            }
+            TerrainTiling.Snapshot first = snapshots.get(0);
+            String[] biomeIds = new String[first.biomeIds().length];
+            for (int i = 0; i < biomeIds.length; i++) biomeIds[i] = String.valueOf(first.biomeIds()[i]);
+            writer.region(new EventLog.Region(entry.getKey().x, entry.getKey().z, biomeIds, first.palette(), chunks));
+        }
+    }
+
+    private static void writeStructures(EventLog.Writer writer, World world, WorldStructureSummary ws, Multimap<RegistryKey<Structure>, ChunkPos> structures) throws IOException {
+        writer.count(structures.size());
+        for (Map.Entry<RegistryKey<Structure>, ChunkPos> entry : structures.entries()) {
+            RegistryKey<Structure> key = entry.getKey();
+            ChunkPos pos = entry.getValue();
+            Map<ChunkPos, TileTexture> textures = new HashMap<>();
+            Map<ChunkPos, StructureTileProvider> providers = new HashMap<>();
+            StructureTileProviders.getInstance().resolve(textures, providers, new HashMap<>(), new HashMap<>(), world, key, pos, ws.get(key, pos), ws.getType(key), ws.getTags(key));
+            List<EventLog.StructureTile> tiles = new ArrayList<>(textures.size());
+            textures.forEach((tilePos, texture) -> tiles.add(new EventLog.StructureTile(tilePos.x, tilePos.z, texture.id().toString(), providers.get(tilePos).priority())));
+            writer.structure(new EventLog.Structure(key.getValue().toString(), pos.x, pos.z, tiles));
+        }
+    }
+
+    private static void writeLandmarks(EventLog.Writer writer, Multimap<LandmarkType<?>, BlockPos> landmarks) throws IOException {
+        writer.count(landmarks.size());
+        for (Map.Entry<LandmarkType<?>, BlockPos> entry : landmarks.entries()) {
+            writer.landmark(new EventLog.Landmark(entry.getKey().id().toString(), entry.getValue().getX(), entry.getValue().getY(), entry.getValue().getZ()));
+        }
+    }
+
+    public static void onLoad(World world, WorldSummary summary, ClientPlayerEntity ignored, Map<ChunkPos, BitSet> terrain, Multimap<RegistryKey<Structure>, ChunkPos> structures, Multimap<LandmarkType<?>, BlockPos> landmarks) {
+        record(world, writer -> {
+            writer.event(EventLog.WORLD_LOAD);
+            writeRegions(writer, world, terrain);
+            writeStructures(writer, world, summary.structures(), structures);
+            writeLandmarks(writer, landmarks);
+        });
+    }
+
+    public static void onTerrainUpdated(World world, WorldTerrainSummary ignored, Collection<ChunkPos> chunks) {
+        record(world, writer -> {
+            Map<ChunkPos, BitSet> regions = new HashMap<>();
+            for (ChunkPos pos : chunks) {
+                regions.computeIfAbsent(new ChunkPos(pos.getRegionX(), pos.getRegionZ()), k -> new BitSet(TileStore.PAGE_SIZE)).set(TileStore.regionBit(pos.x, pos.z));
+            }
+            writer.event(EventLog.TERRAIN_UPDATED);
+            writeRegions(writer, world, regions);
+        });
+    }
+
+    public static void onStructuresAdded(World world, WorldStructureSummary ws, Multimap<RegistryKey<Structure>, ChunkPos> structures) {
+        record(world, writer -> {
+            writer.event(EventLog.STRUCTURES_ADDED);
+            writeStructures(writer, world, ws, structures);
+        });
+    }
+
+    public static void onLandmarksAdded(World world, WorldLandmarks ignored, Multimap<LandmarkType<?>, BlockPos> landmarks) {
+        record(world, writer -> {
+            writer.event(EventLog.LANDMARKS_ADDED);
+            writeLandmarks(writer, landmarks);
+        });
+    }
+
+    public static void onLandmarksRemoved(World world, WorldLandmarks ignored, Multimap<LandmarkType<?>, BlockPos> landmarks) {
+        record(world, writer -> {
+            writer.event(EventLog.LANDMARKS_REMOVED);
+            writeLandmarks(writer, landmarks);
+        });
+    }
+}
@@ -18,7 +18,11 @@ public record TerrainTileProvider(Identifier id, Map<TileElevation, List<TileTex
     }
 
     public TileTexture getTexture(ChunkPos pos, @Nullable TileElevation elevation) {
-        int variation = (int) (MathHelper.hashCode(pos.x, pos.z, pos.x * pos.z) & 0x7FFFFFFF);
+        return getTexture(pos.x, pos.z, elevation);
+    }
+
+    public TileTexture getTexture(int x, int z, @Nullable TileElevation elevation) {
+        int variation = (int) (MathHelper.hashCode(x, z, x * z) & 0x7FFFFFFF);
         TileElevation usedElevation = elevation == null ? TileElevation.VALLEY : elevation;
         return textures.get(usedElevation).get(variation % textures.get(usedElevation).size());
     }
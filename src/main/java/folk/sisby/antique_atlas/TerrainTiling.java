@@ -1,20 +1,16 @@
 package folk.sisby.antique_atlas;
 
-import folk.sisby.antique_atlas.reloader.BiomeTileProviders;
+import folk.sisby.antique_atlas.util.TerrainHistogram;
+import folk.sisby.antique_atlas.util.TileStore;
 import folk.sisby.surveyor.WorldSummary;
 import folk.sisby.surveyor.terrain.ChunkSummary;
 import folk.sisby.surveyor.terrain.LayerSummary;
 import folk.sisby.surveyor.terrain.WorldTerrainSummary;
 import it.unimi.dsi.fastutil.Pair;
-import it.unimi.dsi.fastutil.objects.Reference2BooleanArrayMap;
-import it.unimi.dsi.fastutil.objects.Reference2IntArrayMap;
-import net.fabricmc.fabric.api.tag.convention.v1.ConventionalBiomeTags;
 import net.minecraft.block.Block;
 import net.minecraft.block.Blocks;
 import net.minecraft.registry.Registry;
 import net.minecraft.registry.RegistryKeys;
-import net.minecraft.registry.entry.RegistryEntry;
-import net.minecraft.registry.tag.BiomeTags;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.collection.IndexedIterable;
 import net.minecraft.util.math.ChunkPos;
@@ -22,20 +18,22 @@ import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Hottest class in the mod. Might get ugly.
  */
 public class TerrainTiling {
-    public static final int EMPTY_PRIORITY = 16;
-    public static final int RAVINE_PRIORITY = 12;
-    public static final int LAVA_PRIORITY = 6;
-    public static final int WATER_PRIORITY = 4;
-    public static final int ICE_PRIORITY = 3;
-    public static final int BEACH_PRIORITY = 3;
-
+    /**
+     * Bump whenever classification changes, so cached tiles from older versions get re-tiled.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Provider IDs for the custom tiles, in {@link TerrainHistogram} order.
+     */
     public static final List<Identifier> CUSTOM_TILES = List.of(
         FeatureTiles.BEDROCK_ROOF,
         FeatureTiles.EMPTY,
@@ -48,142 +46,152 @@ public class TerrainTiling {
         FeatureTiles.TILE_LAVA_SHORE
     );
 
+    private static final TileElevation[] ELEVATIONS = TileElevation.values();
+
     public static final int NETHER_SCAN_HEIGHT = 50;
-    public static final Map<Biome, Integer> priorityCache = new Reference2IntArrayMap<>();
-    public static final Map<Biome, Boolean> swampCache = new Reference2BooleanArrayMap<>();
-
-    protected static int priorityForBiome(Registry<Biome> biomeRegistry, Biome biome) {
-        return priorityCache.computeIfAbsent(biome, b -> {
-            RegistryEntry<Biome> biomeEntry = biomeRegistry.getEntry(biome);
-            if (biomeEntry.isIn(BiomeTags.IS_BEACH)) {
-                return BEACH_PRIORITY;
-            } else if (biomeEntry.isIn(BiomeTags.IS_NETHER)) {
-                return 2;
-            } else {
-                return 1;
-            }
-        });
-    }
 
-    protected static boolean isSwamp(Registry<Biome> biomeRegistry, Biome biome) {
-        return swampCache.computeIfAbsent(biome, b -> biomeRegistry.getEntry(b).isIn(ConventionalBiomeTags.SWAMP));
-    }
+    /**
+     * Everything about the world that tiling needs, captured on the client thread - and which layers of a chunk summary it reads.
+     */
+    public record Context(int defaultTile, boolean checkRavines, boolean nether, int topY, int netherMaxY, int seaLevel) implements TerrainHistogram.Layers<ChunkSummary, LayerSummary.Raw> {
+        public static Context of(World world) {
+            return new Context(
+                world.getDimension().hasCeiling() ? TerrainHistogram.BEDROCK_ROOF_TILE : (world.getRegistryKey() == World.END ? TerrainHistogram.END_VOID_TILE : TerrainHistogram.EMPTY_TILE),
+                world.getRegistryKey() == World.OVERWORLD,
+                world.getRegistryKey() == World.NETHER,
+                world.getTopY(),
+                world.getBottomY() + world.getDimension().logicalHeight() - 1,
+                world.getSeaLevel()
+            );
+        }
 
-    protected static Pair<TerrainTileProvider, TileElevation> frequencyToTexture(int[][] possibleTiles, Registry<Biome> biomeRegistry, IndexedIterable<Biome> biomePalette) {
-        int elevationOrdinal = -1;
-        int biomeIndex = -1;
-        int bestFrequency = 0;
-        for (int i = 0; i < possibleTiles.length; i++) {
-            for (int j = 0; j < possibleTiles[i].length; j++) {
-                if (possibleTiles[i][j] > bestFrequency) {
-                    elevationOrdinal = i;
-                    biomeIndex = j;
-                    bestFrequency = possibleTiles[i][j];
-                }
-            }
+        @Override
+        public @Nullable LayerSummary.Raw surface(ChunkSummary chunk) {
+            return chunk.toSingleLayer(null, nether ? netherMaxY : null, topY);
+        }
+
+        @Override
+        public @Nullable LayerSummary.Raw floor(ChunkSummary chunk) {
+            return chunk.toSingleLayer(null, NETHER_SCAN_HEIGHT, topY);
+        }
+
+        @Override
+        public BitSet exists(LayerSummary.Raw layer) {
+            return layer.exists();
+        }
+
+        @Override
+        public int[] depths(LayerSummary.Raw layer) {
+            return layer.depths();
+        }
+
+        @Override
+        public int[] waterDepths(LayerSummary.Raw layer) {
+            return layer.waterDepths();
+        }
+
+        @Override
+        public int[] blocks(LayerSummary.Raw layer) {
+            return layer.blocks();
+        }
+
+        @Override
+        public int[] biomes(LayerSummary.Raw layer) {
+            return layer.biomes();
         }
-        if (bestFrequency == 0) return null;
-        int customTileIndex = biomeIndex - possibleTiles[0].length + CUSTOM_TILES.size();
-        Identifier providerId = customTileIndex >= 0 ? CUSTOM_TILES.get(customTileIndex) : biomeRegistry.getId(biomePalette.get(biomeIndex));
-        return Pair.of(BiomeTileProviders.getInstance().getTileProvider(providerId), elevationOrdinal == TileElevation.values().length ? null : TileElevation.values()[elevationOrdinal]);
     }
 
-    public static Pair<TerrainTileProvider, TileElevation> terrainToTile(World world, ChunkPos pos) {
-        Registry<Biome> biomeRegistry = world.getRegistryManager().get(RegistryKeys.BIOME);
-        int defaultTile = CUSTOM_TILES.indexOf(world.getDimension().hasCeiling() ? FeatureTiles.BEDROCK_ROOF : (world.getRegistryKey() == World.END ? FeatureTiles.END_VOID : FeatureTiles.EMPTY));
-        boolean checkRavines = world.getRegistryKey() == World.OVERWORLD;
+    /**
+     * A chunk summary with its palettes resolved, safe to tile off the client thread.
+     * Surveyor replaces chunk summaries rather than mutating them, so the summary itself is shared.
+     * Chunks from the same region share their palette arrays.
+     */
+    public record Snapshot(ChunkPos pos, ChunkSummary chunk, Identifier[] biomeIds, TerrainHistogram.Palette palette) {
+    }
 
-        int worldHeight = world.getTopY();
+    /**
+     * @return the chunk at an index in one of Surveyor's region bitsets.
+     */
+    public static ChunkPos fromRegionBit(ChunkPos regionPos, int bit) {
+        int index = TileStore.fromRegionBit(bit);
+        return new ChunkPos(regionPos.x << TileStore.REGION_POWER | (index & TileStore.REGION_MASK), regionPos.z << TileStore.REGION_POWER | (index >> TileStore.REGION_POWER));
+    }
 
-        WorldTerrainSummary terrain = WorldSummary.of(world).terrain();
-        if (terrain == null) return null;
-        ChunkSummary chunk = terrain.get(pos);
-        if (chunk == null) return null; // Skip events fired for chunks we don't have yet (e.g. new shares)
-        @Nullable LayerSummary.Raw summary = chunk.toSingleLayer(null, null, world.getTopY());
+    /**
+     * Resolves the palettes Surveyor shares between the chunks of a region into snapshots.
+     */
+    private static Snapshot snapshot(Registry<Biome> biomeRegistry, WorldTerrainSummary terrain, ChunkPos pos, ChunkSummary chunk) {
         IndexedIterable<Biome> biomePalette = terrain.getBiomePalette(pos);
         IndexedIterable<Block> blockPalette = terrain.getBlockPalette(pos);
-        if (summary == null) return Pair.of(BiomeTileProviders.getInstance().getTileProvider(CUSTOM_TILES.get(defaultTile)), null);
-
-        int elevationSize = TileElevation.values().length;
-        int elevationCount = elevationSize + 1;
-        int biomeCount = biomePalette.size();
-        int baseTileCount = biomeCount + CUSTOM_TILES.size();
-        int[][] possibleTiles = new int[elevationCount][baseTileCount];
-
-        for (int i = 0; i < summary.depths().length; i++) {
-            if (!summary.exists().get(i)) {
-                possibleTiles[elevationSize][defaultTile] += EMPTY_PRIORITY;
-                continue;
-            }
-            int height = worldHeight - summary.depths()[i] + summary.waterDepths()[i];
-            Block block = blockPalette.get(summary.blocks()[i]);
-            Biome biome = biomePalette.get(summary.biomes()[i]);
-
-            if (checkRavines && height - world.getSeaLevel() < -7) {
-                possibleTiles[elevationSize][biomeCount + CUSTOM_TILES.indexOf(FeatureTiles.TILE_RAVINE)] += RAVINE_PRIORITY;
-            } else if (summary.waterDepths()[i] > 0) {
-                possibleTiles[elevationSize][biomeCount + CUSTOM_TILES.indexOf(isSwamp(biomeRegistry, biome) ? FeatureTiles.SWAMP_WATER : FeatureTiles.WATER)] += WATER_PRIORITY;
-            } else if (block == Blocks.ICE) {
-                possibleTiles[elevationSize][biomeCount + CUSTOM_TILES.indexOf(FeatureTiles.ICE)] += ICE_PRIORITY;
-            } else if (block == Blocks.LAVA) {
-                possibleTiles[elevationSize][biomeCount + CUSTOM_TILES.indexOf(FeatureTiles.TILE_LAVA)] += LAVA_PRIORITY;
-            }
-            possibleTiles[TileElevation.fromBlocksAboveSea(height - world.getSeaLevel()).ordinal()][summary.biomes()[i]] += priorityForBiome(biomeRegistry, biome);
+        Identifier[] biomeIds = new Identifier[biomePalette.size()];
+        int[] biomePriorities = new int[biomeIds.length];
+        boolean[] swampBiomes = new boolean[biomeIds.length];
+        BiomeTable table = BiomeTable.getInstance();
+        for (int i = 0; i < biomeIds.length; i++) {
+            int rawId = table.getRawId(biomeRegistry, biomePalette.get(i));
+            biomeIds[i] = table.getId(rawId);
+            biomePriorities[i] = table.getPriority(rawId);
+            swampBiomes[i] = table.is(rawId, BiomeTable.SWAMP);
         }
-
-        return frequencyToTexture(possibleTiles, biomeRegistry, biomePalette);
+        byte[] blockKinds = new byte[blockPalette.size()];
+        for (int i = 0; i < blockKinds.length; i++) {
+            Block block = blockPalette.get(i);
+            blockKinds[i] = block == Blocks.ICE ? TerrainHistogram.ICE_BLOCK : block == Blocks.LAVA ? TerrainHistogram.LAVA_BLOCK : TerrainHistogram.OTHER_BLOCK;
+        }
+        return new Snapshot(pos, chunk, biomeIds, new TerrainHistogram.Palette(biomePriorities, swampBiomes, blockKinds));
     }
 
-    public static Pair<TerrainTileProvider, TileElevation> terrainToTileNether(World world, ChunkPos pos) {
-        Registry<Biome> biomeRegistry = world.getRegistryManager().get(RegistryKeys.BIOME);
-        int defaultTile = CUSTOM_TILES.indexOf(world.getDimension().hasCeiling() ? FeatureTiles.BEDROCK_ROOF : (world.getRegistryKey() == World.END ? FeatureTiles.END_VOID : FeatureTiles.EMPTY));
-
+    public static @Nullable Snapshot snapshot(World world, ChunkPos pos) {
         WorldTerrainSummary terrain = WorldSummary.of(world).terrain();
         if (terrain == null) return null;
         ChunkSummary chunk = terrain.get(pos);
         if (chunk == null) return null; // Skip events fired for chunks we don't have yet (e.g. new shares)
-        @Nullable LayerSummary.Raw lowSummary = chunk.toSingleLayer(null, NETHER_SCAN_HEIGHT, world.getTopY());
-        @Nullable LayerSummary.Raw fullSummary = chunk.toSingleLayer(null, world.getBottomY() + world.getDimension().logicalHeight() - 1, world.getTopY());
-        IndexedIterable<Biome> biomePalette = terrain.getBiomePalette(pos);
-        IndexedIterable<Block> blockPalette = terrain.getBlockPalette(pos);
-
-        int elevationSize = TileElevation.values().length;
-        int elevationCount = elevationSize + 1;
-        int biomeCount = biomePalette.size();
-        int baseTileCount = biomeCount + CUSTOM_TILES.size();
-        int[][] possibleTiles = new int[elevationCount][baseTileCount];
-
-        if (fullSummary == null) {
-            return Pair.of(BiomeTileProviders.getInstance().getTileProvider(CUSTOM_TILES.get(defaultTile)), null);
-        }
-
-        int SEA_DEPTH = world.getTopY() - 31;
+        return snapshot(world.getRegistryManager().get(RegistryKeys.BIOME), terrain, pos, chunk);
+    }
 
-        if (lowSummary == null) {
-            for (int i = 0; i < fullSummary.depths().length; i++) {
-                if (!fullSummary.exists().get(i)) {
-                    possibleTiles[elevationSize][defaultTile] += EMPTY_PRIORITY;
-                } else {
-                    Biome biome = biomePalette.get(fullSummary.biomes()[i]);
-                    possibleTiles[elevationSize][fullSummary.biomes()[i]] += priorityForBiome(biomeRegistry, biome);
-                }
-            }
-        } else {
-            for (int i = 0; i < lowSummary.depths().length; i++) {
-                if (!lowSummary.exists().get(i) || lowSummary.depths()[i] > SEA_DEPTH) {
-                    Biome biome = biomePalette.get(fullSummary.biomes()[i]);
-                    possibleTiles[elevationSize][fullSummary.biomes()[i]] += priorityForBiome(biomeRegistry, biome);
-                } else {
-                    Block block = blockPalette.get(lowSummary.blocks()[i]);
-                    if (block == Blocks.LAVA) { // Lava Sea
-                        possibleTiles[elevationSize][biomeCount + CUSTOM_TILES.indexOf(FeatureTiles.TILE_LAVA)] += LAVA_PRIORITY;
-                    } else { // Low Floor
-                        possibleTiles[elevationSize][biomeCount + CUSTOM_TILES.indexOf(FeatureTiles.TILE_LAVA_SHORE)] += BEACH_PRIORITY;
-                    }
-                }
+    /**
+     * Snapshots several chunks of one region at once, resolving the region's palettes only once.
+     *
+     * @param chunks the chunks to snapshot, indexed by {@link TileStore#regionBit(int, int)} like Surveyor's region bitsets.
+     * @return snapshots of the chunks that have summaries, in bit order.
+     */
+    public static List<Snapshot> snapshotRegion(World world, ChunkPos regionPos, BitSet chunks) {
+        List<Snapshot> snapshots = new ArrayList<>(chunks.cardinality());
+        WorldTerrainSummary terrain = WorldSummary.of(world).terrain();
+        if (terrain == null) return snapshots;
+        Snapshot palettes = null;
+        for (int bit = chunks.nextSetBit(0); bit >= 0; bit = chunks.nextSetBit(bit + 1)) {
+            ChunkPos pos = fromRegionBit(regionPos, bit);
+            ChunkSummary chunk = terrain.get(pos);
+            if (chunk == null) continue;
+            if (palettes == null) {
+                palettes = snapshot(world.getRegistryManager().get(RegistryKeys.BIOME), terrain, pos, chunk);
+                snapshots.add(palettes);
+            } else {
+                snapshots.add(new Snapshot(pos, chunk, palettes.biomeIds(), palettes.palette()));
             }
         }
+        return snapshots;
+    }
+
+    /**
+     * Thread-safe - only touches the context and snapshot.
+     *
+     * @return the provider ID and elevation for the chunk, or null if it has nothing to show.
+     */
+    public static Pair<Identifier, TileElevation> classify(Context context, Snapshot snapshot) {
+        return frequencyToTexture(TerrainHistogram.classify(context, snapshot.chunk(), snapshot.palette(), context.defaultTile(), context.checkRavines(), context.nether(), context.topY(), context.seaLevel()), snapshot.biomeIds());
+    }
 
-        return frequencyToTexture(possibleTiles, biomeRegistry, biomePalette);
+    /**
+     * @param result a result from {@link TerrainHistogram}.
+     */
+    protected static Pair<Identifier, TileElevation> frequencyToTexture(int result, Identifier[] biomeIds) {
+        if (result == -1) return null;
+        int stride = biomeIds.length + TerrainHistogram.CUSTOM_TILES;
+        int row = result / stride;
+        int tile = result % stride;
+        Identifier providerId = tile >= biomeIds.length ? CUSTOM_TILES.get(tile - biomeIds.length) : biomeIds[tile];
+        return Pair.of(providerId, row == TerrainHistogram.NO_ELEVATION ? null : ELEVATIONS[row]);
     }
 }
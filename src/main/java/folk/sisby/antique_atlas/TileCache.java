@@ -0,0 +1,129 @@
+package folk.sisby.antique_atlas;
+
+import folk.sisby.antique_atlas.util.TileStore;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Resolved terrain tiles for one dimension of one server, kept on disk between sessions.
+ * Each 32x32 chunk region is a fixed-layout file:
+ * a header, one short per chunk in {@link TileStore#index(int, int)} order, then the region's provider IDs.
+ * Each entry is the chunk's terrain value (local provider index and elevation), or -1 for no tile.
+ * Textures aren't stored - they're resolved from the providers on load, so changed tags, resource packs or providers never load stale.
+ * Files only load when their key matches - which covers the tiling and mod versions.
+ */
+public class TileCache {
+    public static final int MAGIC = 0x41415443; // AATC
+    public static final int FORMAT_VERSION = 2;
+    public static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+    public static final int ENTRIES_SIZE = TileStore.PAGE_SIZE * Short.BYTES;
+    public static final short EMPTY = -1;
+
+    private final Path directory;
+    private final long key;
+
+    public record Region(short[] entries, Identifier[] providers) {
+    }
+
+    public TileCache(Path directory) {
+        this.directory = directory;
+        long hash = TerrainTiling.VERSION;
+        hash = 31 * hash + FabricLoader.getInstance().getModContainer(AntiqueAtlas.ID).map(mod -> mod.getMetadata().getVersion().getFriendlyString()).orElse("").hashCode();
+        this.key = hash;
+    }
+
+    /**
+     * @return a cache for the world on the current server, or null if the server can't be identified.
+     */
+    public static @Nullable TileCache of(World world) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        String server;
+        if (client.getServer() != null) {
+            server = "local_" + client.getServer().getSavePath(WorldSavePath.ROOT).normalize().getFileName();
+        } else if (client.getCurrentServerEntry() != null) {
+            server = client.getCurrentServerEntry().address;
+        } else {
+            return null;
+        }
+        Identifier dimension = world.getRegistryKey().getValue();
+        return new TileCache(FabricLoader.getInstance().getGameDir().resolve(AntiqueAtlas.ID).resolve("cache").resolve(sanitize(server)).resolve(dimension.getNamespace()).resolve(sanitize(dimension.getPath())));
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_.-]", "_");
+    }
+
+    private Path getPath(int regionX, int regionZ) {
+        return directory.resolve("r.%d.%d.tiles".formatted(regionX, regionZ));
+    }
+
+    /**
+     * @return the cached region, or null if there isn't a valid one.
+     */
+    public @Nullable Region read(int regionX, int regionZ) {
+        Path path = getPath(regionX, regionZ);
+        if (!Files.isRegularFile(path)) return null;
+        try {
+            // Read onto the heap rather than mapped - a live mapping keeps the file locked on Windows, so it couldn't be replaced on save.
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (buffer.remaining() < HEADER_SIZE + ENTRIES_SIZE + Integer.BYTES) return null;
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getLong() != key) return null;
+            short[] entries = new short[TileStore.PAGE_SIZE];
+            buffer.asShortBuffer().get(entries);
+            buffer.position(HEADER_SIZE + ENTRIES_SIZE);
+            Identifier[] providers = new Identifier[buffer.getInt()];
+            for (int i = 0; i < providers.length; i++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                providers[i] = Identifier.tryParse(new String(bytes, StandardCharsets.UTF_8));
+            }
+            return new Region(entries, providers);
+        } catch (IOException | RuntimeException e) {
+            AntiqueAtlas.LOGGER.warn("[Antique Atlas] Failed to read tile cache {} - it will be re-tiled.", path, e);
+            return null;
+        }
+    }
+
+    public void write(int regionX, int regionZ, short[] entries, List<Identifier> providers) {
+        Path path = getPath(regionX, regionZ);
+        byte[][] providerBytes = new byte[providers.size()][];
+        int size = HEADER_SIZE + ENTRIES_SIZE + Integer.BYTES;
+        for (int i = 0; i < providerBytes.length; i++) {
+            providerBytes[i] = providers.get(i).toString().getBytes(StandardCharsets.UTF_8);
+            size += Short.BYTES + providerBytes[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(key);
+        buffer.asShortBuffer().put(entries);
+        buffer.position(HEADER_SIZE + ENTRIES_SIZE);
+        buffer.putInt(providerBytes.length);
+        for (byte[] bytes : providerBytes) {
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+        buffer.flip();
+        try {
+            Files.createDirectories(directory);
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            AntiqueAtlas.LOGGER.error("[Antique Atlas] Failed to write tile cache {}", path, e);
+        }
+    }
+}
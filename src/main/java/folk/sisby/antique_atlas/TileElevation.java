@@ -1,5 +1,7 @@
 package folk.sisby.antique_atlas;
 
+import folk.sisby.antique_atlas.util.TerrainHistogram;
+
 /**
  * The enum represents the different height levels in biomes.
  */
@@ -25,16 +27,6 @@ public enum TileElevation {
     }
 
     public static TileElevation fromBlocksAboveSea(int elevation) {
-        if (elevation < 10) {
-            return TileElevation.VALLEY;
-        } else if (elevation < 20) {
-            return TileElevation.LOW;
-        } else if (elevation < 35) {
-            return TileElevation.MID;
-        } else if (elevation < 50) {
-            return TileElevation.HIGH;
-        } else {
-            return TileElevation.PEAK;
-        }
+        return values()[TerrainHistogram.elevation(elevation)];
     }
 }
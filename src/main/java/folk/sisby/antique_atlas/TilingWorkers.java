@@ -0,0 +1,42 @@
+package folk.sisby.antique_atlas;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The background threads that classify terrain snapshots, sized by {@link AntiqueAtlasConfig#tilingThreads}.
+ */
+public class TilingWorkers {
+    /**
+     * How many chunks each worker may have queued before the tick stops handing out more.
+     */
+    public static final int CHUNKS_PER_WORKER = 32;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static ExecutorService executor = null;
+    private static int threads = 0;
+
+    /**
+     * @return the worker pool, or null if tiling should stay on the client thread.
+     */
+    public static @Nullable ExecutorService get() {
+        int configured = Math.max(0, AntiqueAtlas.CONFIG.tilingThreads);
+        if (configured != threads) {
+            if (executor != null) executor.shutdown();
+            executor = configured == 0 ? null : Executors.newFixedThreadPool(configured, runnable -> {
+                Thread thread = new Thread(runnable, "Antique Atlas Tiling #" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            threads = configured;
+        }
+        return executor;
+    }
+
+    public static int capacity() {
+        return threads * CHUNKS_PER_WORKER;
+    }
+}
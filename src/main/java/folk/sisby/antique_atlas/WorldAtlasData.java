@@ -1,10 +1,18 @@
 package folk.sisby.antique_atlas;
 
 import com.google.common.collect.Multimap;
+import folk.sisby.antique_atlas.gui.AtlasScreen;
+import folk.sisby.antique_atlas.gui.tiles.TileSource;
 import folk.sisby.antique_atlas.reloader.BiomeTileProviders;
 import folk.sisby.antique_atlas.reloader.MarkerTextures;
 import folk.sisby.antique_atlas.reloader.StructureTileProviders;
+import folk.sisby.antique_atlas.reloader.TileTextures;
+import folk.sisby.antique_atlas.util.MathUtil;
 import folk.sisby.antique_atlas.util.Rect;
+import folk.sisby.antique_atlas.util.TickBudget;
+import folk.sisby.antique_atlas.util.TileMap;
+import folk.sisby.antique_atlas.util.TileStore;
+import folk.sisby.antique_atlas.util.WorldTiles;
 import folk.sisby.surveyor.WorldSummary;
 import folk.sisby.surveyor.client.SurveyorClient;
 import folk.sisby.surveyor.landmark.Landmark;
@@ -15,6 +23,14 @@ import folk.sisby.surveyor.landmark.WorldLandmarks;
 import folk.sisby.surveyor.structure.WorldStructureSummary;
 import folk.sisby.surveyor.terrain.WorldTerrainSummary;
 import it.unimi.dsi.fastutil.Pair;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.text.MutableText;
@@ -26,101 +42,339 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.gen.structure.Structure;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
-import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 
-public class WorldAtlasData {
+public class WorldAtlasData implements TileSource {
     public static final Map<RegistryKey<World>, WorldAtlasData> WORLDS = new HashMap<>();
 
     public static WorldAtlasData getOrCreate(World world) {
-        return WorldAtlasData.WORLDS.computeIfAbsent(world.getRegistryKey(), k -> new WorldAtlasData());
+        return WorldAtlasData.WORLDS.computeIfAbsent(world.getRegistryKey(), k -> new WorldAtlasData(TileCache.of(world)));
     }
 
     public static void onLoad(World world, WorldSummary summary, ClientPlayerEntity player, Map<ChunkPos, BitSet> terrain, Multimap<RegistryKey<Structure>, ChunkPos> structures, Multimap<LandmarkType<?>, BlockPos> landmarks) {
         WorldAtlasData data = getOrCreate(world);
-        data.onTerrainUpdated(world, summary.terrain(), WorldTerrainSummary.toKeys(terrain, player.getChunkPos()));
+        long queueStart = System.nanoTime();
+        int cached = 0;
+        for (Map.Entry<ChunkPos, BitSet> entry : terrain.entrySet()) {
+            cached += data.worldTiles.queueRegion(entry.getKey().x, entry.getKey().z, entry.getValue(), data.loadCache(entry.getKey()));
+        }
+        long queueTime = System.nanoTime() - queueStart;
         data.onStructuresAdded(world, summary.structures(), structures);
         data.onLandmarksAdded(world, summary.landmarks(), landmarks);
-        AntiqueAtlas.LOGGER.info("[Antique Atlas] Beginning to load terrain for {} - {} chunks available.", world.getRegistryKey().getValue(), data.terrainDeque.size());
+        AntiqueAtlas.LOGGER.info("[Antique Atlas] Beginning to load terrain for {} - {} chunks loaded from cache, {} chunks queued in {}ms.", world.getRegistryKey().getValue(), cached, data.worldTiles.getPending().size(), queueTime / 1_000_000);
     }
 
-    private final Map<ChunkPos, TileTexture> biomeTiles = new HashMap<>();
-    private final Map<ChunkPos, TileTexture> structureTiles = new HashMap<>();
+    private final @Nullable TileCache cache;
+    private final WorldTiles worldTiles = new WorldTiles(TileTextures.getInstance(), this::getTexture);
+    private final TileMap tiles = worldTiles.getTiles();
+    private final List<Identifier> providers = new ArrayList<>();
+    private final List<TerrainTileProvider> resolvedProviders = new ArrayList<>();
+    private final Object2IntMap<Identifier> providerIndices = new Object2IntOpenHashMap<>();
     private final Map<LandmarkType<?>, Map<BlockPos, Pair<Landmark<?>, MarkerTexture>>> landmarkMarkers = new ConcurrentHashMap<>();
     private final Map<Landmark<?>, MarkerTexture> structureMarkers = new ConcurrentHashMap<>();
 
-    private final Rect tileScope = new Rect(0, 0, 0, 0);
-    private final Deque<ChunkPos> terrainDeque = new ConcurrentLinkedDeque<>();
+    private @Nullable Rect viewport = null;
+    private final Queue<TilingResult> tilingResults = new ConcurrentLinkedQueue<>();
+    private int tilingInFlight = 0;
+    private final TickBudget tickBudget = new TickBudget();
     boolean isFinished = false;
 
-    // Debug Display Info
-    private final Map<ChunkPos, String> debugBiomePredicates = new HashMap<>();
+    private record TilingResult(ChunkPos pos, @Nullable Pair<Identifier, TileElevation> tile) {
+    }
+
+    private final List<StructureTileProvider> structureProviders = new ArrayList<>();
+    private final Reference2IntMap<StructureTileProvider> structureProviderIndices = new Reference2IntOpenHashMap<>();
+
+    // Debug Display Info - only kept while debugRender is on, terrain is re-tiled on hover instead.
     private final Map<ChunkPos, String> debugStructurePredicates = new HashMap<>();
-    private final Map<ChunkPos, TerrainTileProvider> debugBiomes = new HashMap<>();
-    private final Map<ChunkPos, StructureTileProvider> debugStructures = new HashMap<>();
+    private @Nullable ChunkPos debugPos = null;
+    private @Nullable Pair<Identifier, TileElevation> debugTile = null;
+
+    public WorldAtlasData(@Nullable TileCache cache) {
+        this.cache = cache;
+    }
 
     public void onTerrainUpdated(World world, WorldTerrainSummary ignored2, Collection<ChunkPos> chunks) {
         for (ChunkPos pos : chunks) {
-            if (!biomeTiles.containsKey(pos) && !terrainDeque.contains(pos)) terrainDeque.add(pos);
+            worldTiles.onTerrainUpdated(pos.x, pos.z);
+        }
+    }
+
+    /**
+     * Reads a region's cached terrain, with its providers mapped to this world's.
+     *
+     * @return terrain values indexed by {@link TileStore#index(int, int)}, or null if the region isn't cached.
+     */
+    private @Nullable short[] loadCache(ChunkPos regionPos) {
+        TileCache.Region region = cache == null ? null : cache.read(regionPos.x, regionPos.z);
+        if (region == null) return null;
+        int[] regionProviders = new int[region.providers().length];
+        for (int i = 0; i < regionProviders.length; i++) {
+            regionProviders[i] = region.providers()[i] == null ? -1 : getProviderIndex(region.providers()[i]);
+        }
+        // Textures aren't cached - they're always resolved from the provider, so they follow the current tags and resource packs.
+        short[] terrain = region.entries();
+        for (int i = 0; i < terrain.length; i++) {
+            if (terrain[i] == TileCache.EMPTY) continue;
+            int localProvider = WorldTiles.terrainProvider(terrain[i]);
+            int elevation = WorldTiles.terrainElevation(terrain[i]);
+            // A corrupt entry is re-tiled rather than trusted.
+            int provider = localProvider >= 0 && localProvider < regionProviders.length ? regionProviders[localProvider] : -1;
+            boolean validElevation = elevation >= WorldTiles.NO_ELEVATION && elevation < TileElevation.values().length;
+            terrain[i] = provider == -1 || !validElevation ? TileStore.EMPTY : WorldTiles.packTerrain(provider, elevation);
+        }
+        return terrain;
+    }
+
+    /**
+     * Writes every region with newly tiled chunks to the cache.
+     */
+    public void saveCache() {
+        LongSet dirtyRegions = worldTiles.getDirtyRegions();
+        if (cache == null || dirtyRegions.isEmpty()) return;
+        for (long regionKey : dirtyRegions) {
+            int regionX = MathUtil.unpackX(regionKey);
+            int regionZ = MathUtil.unpackZ(regionKey);
+            short[] terrain = worldTiles.getTerrain().getRegion(regionX, regionZ);
+            if (terrain == null) continue;
+            short[] entries = new short[TileStore.PAGE_SIZE];
+            List<Identifier> regionProviders = new ArrayList<>();
+            Int2IntMap localProviders = new Int2IntOpenHashMap();
+            for (int i = 0; i < entries.length; i++) {
+                if (terrain[i] == TileStore.EMPTY) {
+                    entries[i] = TileCache.EMPTY;
+                    continue;
+                }
+                int provider = WorldTiles.terrainProvider(terrain[i]);
+                if (!localProviders.containsKey(provider)) {
+                    localProviders.put(provider, regionProviders.size());
+                    regionProviders.add(providers.get(provider));
+                }
+                int localProvider = localProviders.get(provider);
+                entries[i] = WorldTiles.packTerrain(localProvider, WorldTiles.terrainElevation(terrain[i]));
+            }
+            cache.write(regionX, regionZ, entries, regionProviders);
+        }
+        dirtyRegions.clear();
+    }
+
+    /**
+     * @return the provider's index in this world, or -1 if there are already {@link WorldTiles#MAX_PROVIDERS} providers.
+     */
+    private int getProviderIndex(Identifier providerId) {
+        if (providerIndices.containsKey(providerId)) return providerIndices.getInt(providerId);
+        if (providers.size() >= WorldTiles.MAX_PROVIDERS) {
+            AntiqueAtlas.LOGGER.warn("[Antique Atlas] More than {} tile providers in one world - chunks using {} will not be tiled!", WorldTiles.MAX_PROVIDERS, providerId);
+            providerIndices.put(providerId, -1);
+            return -1;
         }
+        providers.add(providerId);
+        resolvedProviders.add(BiomeTileProviders.getInstance().getTileProvider(providerId));
+        providerIndices.put(providerId, providers.size() - 1);
+        return providers.size() - 1;
     }
 
     public void onStructuresAdded(World world, WorldStructureSummary ws, Multimap<RegistryKey<Structure>, ChunkPos> summaries) {
-        summaries.forEach((key, pos) -> StructureTileProviders.getInstance().resolve(structureTiles, debugStructures, debugStructurePredicates, structureMarkers, world, key, pos, ws.get(key, pos), ws.getType(key), ws.getTags(key)));
+        Map<ChunkPos, TileTexture> textures = new HashMap<>();
+        Map<ChunkPos, StructureTileProvider> tileProviders = new HashMap<>();
+        Map<ChunkPos, String> predicates = new HashMap<>();
+        summaries.forEach((key, pos) -> StructureTileProviders.getInstance().resolve(textures, tileProviders, predicates, structureMarkers, world, key, pos, ws.get(key, pos), ws.getType(key), ws.getTags(key)));
+        textures.forEach((pos, texture) -> {
+            if (!worldTiles.setStructure(pos.x, pos.z, getStructureProviderIndex(tileProviders.get(pos)), TileTextures.getInstance().getId(texture))) return;
+            // Only the predicate of the structure actually shown, so the debug tooltip matches the tile.
+            if (AntiqueAtlas.CONFIG.debugRender) debugStructurePredicates.put(pos, predicates.get(pos));
+        });
+    }
+
+    private int getStructureProviderIndex(StructureTileProvider provider) {
+        if (structureProviderIndices.containsKey(provider)) return structureProviderIndices.getInt(provider);
+        int index = worldTiles.addStructureProvider(provider.priority());
+        structureProviders.add(provider);
+        structureProviderIndices.put(provider, index);
+        return index;
     }
 
     public void tick(World world) {
         if (!BiomeTileProviders.getInstance().hasFallbacks()) return;
-        for (int i = 0; i < AntiqueAtlas.CONFIG.chunkTickLimit; i++) {
-            ChunkPos pos = terrainDeque.pollFirst();
-            if (pos == null) break;
-            Pair<TerrainTileProvider, TileElevation> tile = world.getRegistryKey() == World.NETHER ? TerrainTiling.terrainToTileNether(world, pos) : TerrainTiling.terrainToTile(world, pos);
-            if (tile != null) {
-                tileScope.extendTo(pos.x, pos.z);
-                biomeTiles.put(pos, tile.left().getTexture(pos, tile.right()));
-                debugBiomes.put(pos, tile.left());
-                debugBiomePredicates.put(pos, tile.right() == null ? null : tile.right().getName());
-            }
+        for (TilingResult result = tilingResults.poll(); result != null; result = tilingResults.poll()) {
+            tilingInFlight--;
+            if (result.tile() != null) putTile(result.pos(), result.tile().left(), result.tile().right());
         }
-        if (!isFinished && terrainDeque.isEmpty()) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client.player != null && client.player.getWorld() == world) worldTiles.getPending().setFocus(client.player.getChunkPos().x, client.player.getChunkPos().z, viewport);
+        long budgetNanos = 1000L * (client.isPaused() || !(client.currentScreen instanceof AtlasScreen) ? AntiqueAtlas.CONFIG.idleTickBudgetMicros : AntiqueAtlas.CONFIG.tickBudgetMicros);
+        ExecutorService workers = TilingWorkers.get();
+        long start = System.nanoTime();
+        int processed = worldTiles.poll(
+            (polled, batched) -> (workers == null || tilingInFlight + batched < TilingWorkers.capacity()) && (polled == 0 || tickBudget.fits(System.nanoTime() - start + batched * tickBudget.getAverageNanos(), budgetNanos)),
+            (regionX, regionZ, chunks) -> tileRegion(world, new ChunkPos(regionX, regionZ), chunks)
+        );
+        tickBudget.record(System.nanoTime() - start, processed);
+        if (!isFinished && worldTiles.getPending().isEmpty() && tilingInFlight == 0) {
             isFinished = true;
-            AntiqueAtlas.LOGGER.info("[Antique Atlas] Finished loading terrain for {} - {} tiles.", world.getRegistryKey().getValue(), biomeTiles.size());
+            AntiqueAtlas.LOGGER.info("[Antique Atlas] Finished loading terrain for {} - {} tiles.", world.getRegistryKey().getValue(), tiles.getTerrain().size());
+        }
+    }
+
+    /**
+     * Tiles several chunks of one region together, resolving the region's palettes once.
+     * Runs on the tiling workers if there are any, so results may arrive over the next few ticks.
+     *
+     * @param chunks the chunks to tile, indexed like Surveyor's region bitsets.
+     */
+    public void tileRegion(World world, ChunkPos regionPos, BitSet chunks) {
+        List<TerrainTiling.Snapshot> snapshots = TerrainTiling.snapshotRegion(world, regionPos, chunks);
+        if (snapshots.isEmpty()) return;
+        TerrainTiling.Context context = TerrainTiling.Context.of(world);
+        ExecutorService workers = TilingWorkers.get();
+        if (workers == null) {
+            for (TerrainTiling.Snapshot snapshot : snapshots) {
+                Pair<Identifier, TileElevation> tile = TerrainTiling.classify(context, snapshot);
+                if (tile != null) putTile(snapshot.pos(), tile.left(), tile.right());
+            }
+        } else {
+            tilingInFlight += snapshots.size();
+            workers.execute(() -> {
+                // Every snapshot must post a result, even a failed one - tilingInFlight is only balanced by results.
+                for (TerrainTiling.Snapshot snapshot : snapshots) {
+                    Pair<Identifier, TileElevation> tile = null;
+                    try {
+                        tile = TerrainTiling.classify(context, snapshot);
+                    } catch (Throwable t) {
+                        AntiqueAtlas.LOGGER.error("[Antique Atlas] Failed to tile chunk {}!", snapshot.pos(), t);
+                    } finally {
+                        tilingResults.add(new TilingResult(snapshot.pos(), tile));
+                    }
+                }
+            });
         }
     }
 
+    private void putTile(ChunkPos pos, Identifier providerId, @Nullable TileElevation elevation) {
+        int providerIndex = getProviderIndex(providerId);
+        if (providerIndex == -1) return;
+        worldTiles.setTerrain(pos.x, pos.z, providerIndex, elevation == null ? WorldTiles.NO_ELEVATION : elevation.ordinal());
+        if (debugPos != null && debugPos.equals(pos)) debugPos = null;
+    }
+
+    private short getTexture(int providerIndex, int x, int z, int elevation) {
+        return TileTextures.getInstance().getId(resolvedProviders.get(providerIndex).getTexture(x, z, elevation == WorldTiles.NO_ELEVATION ? null : TileElevation.values()[elevation]));
+    }
+
+    /**
+     * Looks up the tile providers for every provider ID again, e.g. once biome fallbacks are known,
+     * then rebuilds every terrain texture from the stored providers and elevations.
+     */
+    public void resolveProviders() {
+        for (int i = 0; i < providers.size(); i++) {
+            resolvedProviders.set(i, BiomeTileProviders.getInstance().getTileProvider(providers.get(i)));
+        }
+        worldTiles.retexture();
+    }
+
+    /**
+     * Rebuilds every texture after a resource reload.
+     * Structure tiles keep their textures by identifier, as their providers aren't stored.
+     */
+    public void retexture() {
+        long start = System.nanoTime();
+        tiles.getStructures().forEachRegion((regionX, regionZ, textures) -> {
+            for (int i = 0; i < textures.length; i++) {
+                if (textures[i] != TileStore.EMPTY) textures[i] = TileTextures.getInstance().remapId(textures[i]);
+            }
+        });
+        resolveProviders();
+        AntiqueAtlas.LOGGER.info("[Antique Atlas] Re-textured {} tiles in {}ms.", tiles.getTerrain().size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Prioritizes tiling the chunks shown on an open map over everything else.
+     *
+     * @param viewport the visible chunk area, or null once the map is closed.
+     */
+    public void setViewport(@Nullable Rect viewport) {
+        this.viewport = viewport;
+    }
+
+    @Override
     public Rect getScope() {
-        return tileScope;
+        return tiles.getScope();
     }
 
     public TileTexture getTile(int x, int z) {
-        return getTile(new ChunkPos(x, z));
+        short id = tiles.getTileId(x, z);
+        return id == TileStore.EMPTY ? null : TileTextures.getInstance().getById(id);
+    }
+
+    @Override
+    public short getTileId(int x, int z, int step) {
+        return tiles.getTileId(x, z, step);
+    }
+
+    @Override
+    public short getShapes(int x, int z, int step) {
+        return tiles.getShapes(x, z, step);
+    }
+
+    @Override
+    public long getRevision(int regionX, int regionZ, int step) {
+        return tiles.getRevision(regionX, regionZ, step);
+    }
+
+    @Override
+    public void getTileIds(int x, int z, int width, int height, int step, short[] out) {
+        tiles.getTileIds(x, z, width, height, step, out);
+    }
+
+    @Override
+    public void getShapes(int x, int z, int width, int height, int step, short[] tileIds, short[] out) {
+        tiles.getShapes(x, z, width, height, step, tileIds, out);
     }
 
     public TileTexture getTile(ChunkPos pos) {
-        if (!biomeTiles.containsKey(pos)) return null;
-        return structureTiles.getOrDefault(pos, biomeTiles.get(pos));
+        return getTile(pos.x, pos.z);
+    }
+
+    /**
+     * Re-tiles a single chunk for debug display, reusing the result while the same chunk stays hovered.
+     */
+    private @Nullable Pair<Identifier, TileElevation> getDebugTile(World world, ChunkPos pos) {
+        if (!pos.equals(debugPos)) {
+            debugPos = pos;
+            TerrainTiling.Snapshot snapshot = TerrainTiling.snapshot(world, pos);
+            debugTile = snapshot == null ? null : TerrainTiling.classify(TerrainTiling.Context.of(world), snapshot);
+        }
+        return debugTile;
     }
 
-    public Identifier getProvider(ChunkPos pos) {
-        if (structureTiles.containsKey(pos)) {
-            return debugStructures.get(pos).id();
+    public Identifier getProvider(World world, ChunkPos pos) {
+        int structureProvider = worldTiles.getStructureProvider(pos.x, pos.z);
+        if (structureProvider != -1) {
+            return structureProviders.get(structureProvider).id();
         } else {
-            return debugBiomes.containsKey(pos) ? debugBiomes.get(pos).id() : null;
+            Pair<Identifier, TileElevation> tile = getDebugTile(world, pos);
+            return tile == null ? null : BiomeTileProviders.getInstance().getTileProvider(tile.left()).id();
         }
     }
 
-    public String getTilePredicate(ChunkPos pos) {
-        if (structureTiles.containsKey(pos)) {
+    public String getTilePredicate(World world, ChunkPos pos) {
+        if (worldTiles.getStructureProvider(pos.x, pos.z) != -1) {
             return debugStructurePredicates.get(pos);
         } else {
-            return debugBiomePredicates.get(pos);
+            Pair<Identifier, TileElevation> tile = getDebugTile(world, pos);
+            return tile == null || tile.right() == null ? null : tile.right().getName();
         }
     }
 
@@ -17,14 +17,16 @@ import folk.sisby.antique_atlas.gui.core.ScrollBoxComponent;
 import folk.sisby.antique_atlas.gui.tiles.SubTile;
 import folk.sisby.antique_atlas.gui.tiles.SubTileQuartet;
 import folk.sisby.antique_atlas.gui.tiles.TileRenderIterator;
+import folk.sisby.antique_atlas.reloader.TileSprites;
+import folk.sisby.antique_atlas.reloader.TileTextures;
 import folk.sisby.antique_atlas.util.DrawBatcher;
 import folk.sisby.antique_atlas.util.DrawUtil;
 import folk.sisby.antique_atlas.util.MathUtil;
 import folk.sisby.antique_atlas.util.Rect;
+import folk.sisby.antique_atlas.util.TileStore;
 import folk.sisby.surveyor.PlayerSummary;
 import folk.sisby.surveyor.client.SurveyorClient;
 import folk.sisby.surveyor.landmark.Landmark;
-import it.unimi.dsi.fastutil.objects.Reference2ObjectArrayMap;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.option.KeyBinding;
@@ -45,7 +47,6 @@ import org.lwjgl.glfw.GLFW;
 import org.lwjgl.opengl.GL11;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -137,6 +138,12 @@ public class AtlasScreen extends Component {
     private ButtonComponent selectedButton = null;
     private PlayerEntity player;
     private WorldAtlasData worldAtlasData;
+    /**
+     * Kept between frames so its tile window is reused.
+     */
+    private TileRenderIterator tileIterator;
+    private TileBuffers tileBuffers;
+    private MapPageCache mapPageCache;
     private Integer targetOffsetX, targetOffsetY;
     private boolean isMouseOverMap = false;
 
@@ -458,7 +465,12 @@ public class AtlasScreen extends Component {
 
     private void updateAtlasData() {
         if (MinecraftClient.getInstance().world != null) {
-            worldAtlasData = WorldAtlasData.getOrCreate(MinecraftClient.getInstance().world);
+            WorldAtlasData data = WorldAtlasData.getOrCreate(MinecraftClient.getInstance().world);
+            if (data != worldAtlasData) {
+                tileIterator = null;
+                closeTileRenderers();
+            }
+            worldAtlasData = data;
         }
     }
 
@@ -560,12 +572,7 @@ public class AtlasScreen extends Component {
             RenderSystem.setShaderColor(1, 1, 1, 0.5f);
         }
         double guiScale = client.getWindow().getScaleFactor();
-        RenderSystem.enableScissor(
-            (int) (guiScale * (getGuiX() + MAP_BORDER_WIDTH)),
-            (int) (guiScale * (getGuiY() + MAP_BORDER_HEIGHT)),
-            (int) (guiScale * mapWidth),
-            (int) (guiScale * mapHeight)
-        );
+        enableMapScissor(guiScale);
         RenderSystem.enableBlend();
         RenderSystem.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
 
@@ -577,29 +584,31 @@ public class AtlasScreen extends Component {
         int mapEndChunkZ = MathUtil.roundToBase(screenYToWorldZ(getGuiY() + bookWidth) >> 4, tileChunks) + 2 * tileChunks;
         double mapStartScreenX = worldXToScreenX(mapStartChunkX << 4);
         double mapStartScreenY = worldZToScreenY(mapStartChunkZ << 4);
-        TileRenderIterator tiles = new TileRenderIterator(worldAtlasData);
-        tiles.setScope(new Rect(mapStartChunkX, mapStartChunkZ, mapEndChunkX, mapEndChunkZ));
-        tiles.setStep(tileChunks);
+        worldAtlasData.setViewport(new Rect(mapStartChunkX, mapStartChunkZ, mapEndChunkX, mapEndChunkZ));
+        if (AntiqueAtlas.CONFIG.retainTileGeometry && tileBuffers == null) tileBuffers = new TileBuffers(worldAtlasData, TileTextures.getInstance());
+        if (!AntiqueAtlas.CONFIG.retainTileGeometry && tileBuffers != null) {
+            tileBuffers.close();
+            tileBuffers = null;
+        }
+        if (AntiqueAtlas.CONFIG.cacheMapImage && mapPageCache == null) mapPageCache = new MapPageCache(worldAtlasData);
+        if (!AntiqueAtlas.CONFIG.cacheMapImage && mapPageCache != null) {
+            mapPageCache.close();
+            mapPageCache = null;
+        }
 
         context.getMatrices().push();
         context.getMatrices().translate(mapStartScreenX, mapStartScreenY, 0);
         context.getMatrices().scale((float) ((double) mapScale / guiScale), (float) ((double) mapScale / guiScale), 1.0F);
 
-        Map<TileTexture, Collection<SubTile>> tileTextures = new Reference2ObjectArrayMap<>();
-        for (SubTileQuartet subTiles : tiles) {
-            for (SubTile subtile : subTiles) {
-                if (subtile == null || subtile.texture == null) continue;
-                tileTextures.computeIfAbsent(subtile.texture, k -> new ArrayList<>()).add(subtile.copy());
-            }
+        // The cached image spans the whole page from the first tile, whichever way the tiles round.
+        int tileScreenPixels = tilePixels * mapScale;
+        int columns = (int) Math.ceil(bookWidth * guiScale / tileScreenPixels) + 5;
+        int rows = (int) Math.ceil(bookHeight * guiScale / tileScreenPixels) + 5;
+        if (mapPageCache != null && mapPageCache.render(context, this::drawTiles, mapStartChunkX, mapStartChunkZ, columns, rows, tileChunks, tilePixels, mapScale)) {
+            enableMapScissor(guiScale);
+        } else {
+            drawTiles(context, new Rect(mapStartChunkX, mapStartChunkZ, mapEndChunkX, mapEndChunkZ));
         }
-        int subTilePixels = tilePixels / 2;
-        tileTextures.forEach((texture, subtiles) -> {
-            try (DrawBatcher batcher = new DrawBatcher(context, texture.id(), 32, 48)) {
-                for (SubTile subtile : subtiles) {
-                    batcher.add(subtile.x * subTilePixels, subtile.y * subTilePixels, subTilePixels, subTilePixels, subtile.getTextureU() * 8, subtile.getTextureV() * 8, 8, 8);
-                }
-            }
-        });
 
         context.getMatrices().pop();
 
@@ -704,11 +713,11 @@ public class AtlasScreen extends Component {
                 if (texture != null) context.drawText(textRenderer, Text.literal(texture.displayId()), getGuiX() + bookWidth - textRenderer.getWidth(Text.literal(texture.displayId())), getGuiY() + bookHeight, 0xFFFFFFFF, true);
             } else {
                 TileTexture texture = worldAtlasData.getTile(pos);
-                Identifier providerId = worldAtlasData.getProvider(pos);
-                String predicate = worldAtlasData.getTilePredicate(pos);
+                Identifier providerId = worldAtlasData.getProvider(client.world, pos);
+                String predicate = worldAtlasData.getTilePredicate(client.world, pos);
                 if (texture != null) {
                     if (predicate != null) context.drawText(textRenderer, Text.literal(predicate), getGuiX() + bookWidth - textRenderer.getWidth(Text.literal(predicate)), getGuiY() - 12, 0xFFFFFFFF, true);
-                    context.drawText(textRenderer, Text.literal(providerId.toString()), getGuiX(), getGuiY() + bookHeight, 0xFFFFFFFF, true);
+                    if (providerId != null) context.drawText(textRenderer, Text.literal(providerId.toString()), getGuiX(), getGuiY() + bookHeight, 0xFFFFFFFF, true);
                     context.drawText(textRenderer, Text.literal(texture.displayId()), getGuiX() + bookWidth - textRenderer.getWidth(Text.literal(texture.displayId())), getGuiY() + bookHeight, 0xFFFFFFFF, true);
                 }
             }
@@ -772,6 +781,53 @@ public class AtlasScreen extends Component {
         removeChild(markerCursor);
     }
 
+    @Override
+    public void removed() {
+        super.removed();
+        if (worldAtlasData != null) worldAtlasData.setViewport(null);
+        closeTileRenderers();
+    }
+
+    private void closeTileRenderers() {
+        if (tileBuffers != null) {
+            tileBuffers.close();
+            tileBuffers = null;
+        }
+        if (mapPageCache != null) {
+            mapPageCache.close();
+            mapPageCache = null;
+        }
+    }
+
+    private void enableMapScissor(double guiScale) {
+        RenderSystem.enableScissor(
+            (int) (guiScale * (getGuiX() + MAP_BORDER_WIDTH)),
+            (int) (guiScale * (getGuiY() + MAP_BORDER_HEIGHT)),
+            (int) (guiScale * mapWidth),
+            (int) (guiScale * mapHeight)
+        );
+    }
+
+    /**
+     * Draws the tiles of a scope, with the top left of its first tile at the origin.
+     */
+    private void drawTiles(DrawContext context, Rect scope) {
+        int subTilePixels = tilePixels / 2;
+        if (tileBuffers != null && tileBuffers.render(context, scope, tileChunks, subTilePixels)) return;
+        if (tileIterator == null) tileIterator = new TileRenderIterator(worldAtlasData, TileTextures.getInstance());
+        tileIterator.setScope(scope);
+        tileIterator.setStep(tileChunks);
+        TileSprites sprites = TileSprites.getInstance();
+        try (DrawBatcher batcher = new DrawBatcher(context, TileSprites.ATLAS)) {
+            for (SubTileQuartet subTiles : tileIterator) {
+                for (SubTile subtile : subTiles) {
+                    if (subtile == null || subtile.tile == TileStore.EMPTY) continue;
+                    batcher.addUV(subtile.x * subTilePixels, subtile.y * subTilePixels, subTilePixels, subTilePixels, sprites.getMinU(subtile), sprites.getMinV(subtile), sprites.getMaxU(subtile), sprites.getMaxV(subtile));
+                }
+            }
+        }
+    }
+
     private int screenXToWorldX(double mouseX) {
         double mapX = (int) Math.round(mouseX - getGuiX() - MAP_BORDER_WIDTH);
         return (int) Math.round((mapX - (mapWidth / 2f) - mapOffsetX) / getPixelsPerBlock());
@@ -0,0 +1,266 @@
+package folk.sisby.antique_atlas.gui;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.systems.VertexSorter;
+import folk.sisby.antique_atlas.gui.tiles.TileSource;
+import folk.sisby.antique_atlas.reloader.TileSprites;
+import folk.sisby.antique_atlas.util.MathUtil;
+import folk.sisby.antique_atlas.util.Rect;
+import folk.sisby.antique_atlas.util.TilePyramid;
+import folk.sisby.antique_atlas.util.TileStore;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.SimpleFramebuffer;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.BufferRenderer;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.math.MatrixStack;
+import org.joml.Matrix4f;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+
+/**
+ * The tile layer of a map page, kept as an image in an offscreen framebuffer at the window's resolution.
+ * Panning by whole tiles shifts the image and paints only the newly exposed rows and columns,
+ * and a change to the tiles only repaints the regions it touched - so a still map is a single textured quad per frame.
+ */
+public class MapPageCache implements AutoCloseable {
+    public interface Painter {
+        /**
+         * Draws a scope's tiles, with the top left of its first tile at the origin and tiles {@code tilePixels} wide.
+         */
+        void paint(DrawContext context, Rect scope);
+    }
+
+    private final TileSource tiles;
+    /**
+     * The revision each region in the image was painted at.
+     */
+    private Long2LongOpenHashMap revisions = new Long2LongOpenHashMap();
+    /**
+     * Swapped with {@link #revisions} when tracking, so repaints don't allocate.
+     */
+    private Long2LongOpenHashMap tracked = new Long2LongOpenHashMap();
+    private final Rect paintScope = new Rect();
+    private SimpleFramebuffer front = null;
+    private SimpleFramebuffer back = null;
+    private int originX, originZ, columns, rows, step, tilePixels, scale;
+    private int spriteRevision = -1;
+    private Matrix4f projection;
+    private VertexSorter sorter;
+    private float[] shaderColor;
+
+    public MapPageCache(TileSource tiles) {
+        this.tiles = tiles;
+        revisions.defaultReturnValue(-1);
+        tracked.defaultReturnValue(-1);
+    }
+
+    /**
+     * Brings the image up to date, then draws it with its top left at the origin.
+     *
+     * @param originX    the chunk X at the left of the image - a multiple of the step.
+     * @param originZ    the chunk Z at the top of the image - a multiple of the step.
+     * @param tilePixels the width of a tile in the current matrices.
+     * @param scale      the window pixels per unit of the current matrices.
+     * @return false if the source doesn't track changes at this step, so the tiles should be drawn directly.
+     * The scissor test is off afterwards if the image was repainted.
+     */
+    public boolean render(DrawContext context, Painter painter, int originX, int originZ, int columns, int rows, int step, int tilePixels, int scale) {
+        int level = Integer.numberOfTrailingZeros(step);
+        if (step != 1 << level || level > TilePyramid.LEVELS) return false;
+        if (tiles.getRevision((originX >> level) >> TileStore.REGION_POWER, (originZ >> level) >> TileStore.REGION_POWER, step) == -1) return false;
+        int width = columns * tilePixels * scale;
+        int height = rows * tilePixels * scale;
+        boolean full = false;
+        if (front == null) {
+            front = new SimpleFramebuffer(width, height, false, MinecraftClient.IS_SYSTEM_MAC);
+            back = new SimpleFramebuffer(width, height, false, MinecraftClient.IS_SYSTEM_MAC);
+            front.setClearColor(0, 0, 0, 0);
+            back.setClearColor(0, 0, 0, 0);
+            full = true;
+        } else if (front.textureWidth != width || front.textureHeight != height) {
+            front.resize(width, height, MinecraftClient.IS_SYSTEM_MAC);
+            back.resize(width, height, MinecraftClient.IS_SYSTEM_MAC);
+            full = true;
+        }
+        int dx = (originX - this.originX) / step;
+        int dz = (originZ - this.originZ) / step;
+        full |= step != this.step || tilePixels != this.tilePixels || scale != this.scale || spriteRevision != TileSprites.getInstance().getRevision()
+            || Math.abs(dx) >= columns || Math.abs(dz) >= rows;
+
+        if (full || dx != 0 || dz != 0 || isStale(level)) {
+            beginOffscreen(context);
+            if (full) {
+                this.originX = originX;
+                this.originZ = originZ;
+                this.columns = columns;
+                this.rows = rows;
+                this.step = step;
+                this.tilePixels = tilePixels;
+                this.scale = scale;
+                this.spriteRevision = TileSprites.getInstance().getRevision();
+                revisions.clear();
+                front.beginWrite(true);
+                paint(context, painter, 0, 0, columns, rows);
+            } else {
+                repaintStale(context, painter, level);
+                if (dx != 0 || dz != 0) shift(context, painter, dx, dz);
+            }
+            track(level);
+            endOffscreen();
+        }
+
+        RenderSystem.setShaderTexture(0, front.getColorAttachment());
+        RenderSystem.setShader(GameRenderer::getPositionTexProgram);
+        Matrix4f matrix = context.getMatrices().peek().getPositionMatrix();
+        float right = columns * tilePixels;
+        float bottom = rows * tilePixels;
+        BufferBuilder buffer = Tessellator.getInstance().getBuffer();
+        buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_TEXTURE);
+        // Framebuffers are stored bottom-up.
+        buffer.vertex(matrix, 0, 0, 0).texture(0, 1).next();
+        buffer.vertex(matrix, 0, bottom, 0).texture(0, 0).next();
+        buffer.vertex(matrix, right, bottom, 0).texture(1, 0).next();
+        buffer.vertex(matrix, right, 0, 0).texture(1, 1).next();
+        BufferRenderer.drawWithGlobalProgram(buffer.end());
+        return true;
+    }
+
+    private boolean isStale(int level) {
+        int tileX = originX >> level;
+        int tileZ = originZ >> level;
+        for (int regionZ = tileZ >> TileStore.REGION_POWER; regionZ <= (tileZ + rows - 1) >> TileStore.REGION_POWER; regionZ++) {
+            for (int regionX = tileX >> TileStore.REGION_POWER; regionX <= (tileX + columns - 1) >> TileStore.REGION_POWER; regionX++) {
+                if (revisions.get(MathUtil.packXZ(regionX, regionZ)) != tiles.getRevision(regionX, regionZ, step)) return true;
+            }
+        }
+        return false;
+    }
+
+    private void repaintStale(DrawContext context, Painter painter, int level) {
+        front.beginWrite(true);
+        int tileX = originX >> level;
+        int tileZ = originZ >> level;
+        for (int regionZ = tileZ >> TileStore.REGION_POWER; regionZ <= (tileZ + rows - 1) >> TileStore.REGION_POWER; regionZ++) {
+            for (int regionX = tileX >> TileStore.REGION_POWER; regionX <= (tileX + columns - 1) >> TileStore.REGION_POWER; regionX++) {
+                long revision = tiles.getRevision(regionX, regionZ, step);
+                if (revisions.get(MathUtil.packXZ(regionX, regionZ)) == revision) continue;
+                int minColumn = (regionX << TileStore.REGION_POWER) - tileX;
+                int minRow = (regionZ << TileStore.REGION_POWER) - tileZ;
+                paint(context, painter, Math.max(minColumn, 0), Math.max(minRow, 0), Math.min(minColumn + TileStore.REGION_SIZE, columns), Math.min(minRow + TileStore.REGION_SIZE, rows));
+                revisions.put(MathUtil.packXZ(regionX, regionZ), revision);
+            }
+        }
+    }
+
+    /**
+     * Copies the image into the back buffer moved by whole tiles, then paints the tiles that moved into view.
+     */
+    private void shift(DrawContext context, Painter painter, int dx, int dz) {
+        int size = tilePixels * scale;
+        int width = front.textureWidth;
+        int height = front.textureHeight;
+        // Rows count up from the bottom, so moving the origin down moves the image up.
+        int sourceX = Math.max(dx * size, 0);
+        int sourceY = Math.max(-dz * size, 0);
+        int copyWidth = width - Math.abs(dx * size);
+        int copyHeight = height - Math.abs(dz * size);
+        GlStateManager._glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, front.fbo);
+        GlStateManager._glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, back.fbo);
+        GlStateManager._glBlitFrameBuffer(sourceX, sourceY, sourceX + copyWidth, sourceY + copyHeight, sourceX - dx * size, sourceY + dz * size, sourceX - dx * size + copyWidth, sourceY + dz * size + copyHeight, GL11.GL_COLOR_BUFFER_BIT, GL11.GL_NEAREST);
+        SimpleFramebuffer shifted = back;
+        back = front;
+        front = shifted;
+        originX += dx * step;
+        originZ += dz * step;
+
+        front.beginWrite(true);
+        if (dx > 0) paint(context, painter, columns - dx, 0, columns, rows);
+        if (dx < 0) paint(context, painter, 0, 0, -dx, rows);
+        if (dz > 0) paint(context, painter, 0, rows - dz, columns, rows);
+        if (dz < 0) paint(context, painter, 0, 0, columns, -dz);
+    }
+
+    /**
+     * Clears and repaints an area of the image, in tiles from its top left.
+     */
+    private void paint(DrawContext context, Painter painter, int minColumn, int minRow, int maxColumn, int maxRow) {
+        if (minColumn >= maxColumn || minRow >= maxRow) return;
+        int size = tilePixels * scale;
+        RenderSystem.enableScissor(minColumn * size, front.textureHeight - maxRow * size, (maxColumn - minColumn) * size, (maxRow - minRow) * size);
+        RenderSystem.clearColor(0, 0, 0, 0);
+        RenderSystem.clear(GL11.GL_COLOR_BUFFER_BIT, MinecraftClient.IS_SYSTEM_MAC);
+        context.getMatrices().push();
+        context.getMatrices().loadIdentity();
+        context.getMatrices().translate(minColumn * size, minRow * size, 0);
+        context.getMatrices().scale(scale, scale, 1);
+        paintScope.set(originX + minColumn * step, originZ + minRow * step, originX + maxColumn * step - 1, originZ + maxRow * step - 1);
+        painter.paint(context, paintScope);
+        context.getMatrices().pop();
+        RenderSystem.disableScissor();
+    }
+
+    /**
+     * Records the revisions of regions that came into view, and forgets those that left it.
+     */
+    private void track(int level) {
+        tracked.clear();
+        int tileX = originX >> level;
+        int tileZ = originZ >> level;
+        for (int regionZ = tileZ >> TileStore.REGION_POWER; regionZ <= (tileZ + rows - 1) >> TileStore.REGION_POWER; regionZ++) {
+            for (int regionX = tileX >> TileStore.REGION_POWER; regionX <= (tileX + columns - 1) >> TileStore.REGION_POWER; regionX++) {
+                long key = MathUtil.packXZ(regionX, regionZ);
+                tracked.put(key, revisions.containsKey(key) ? revisions.get(key) : tiles.getRevision(regionX, regionZ, step));
+            }
+        }
+        Long2LongOpenHashMap previous = revisions;
+        revisions = tracked;
+        tracked = previous;
+    }
+
+    /**
+     * Points rendering at the image - tiles are drawn opaque and without blending, so the image keeps their exact alpha.
+     * Leaves the scissor test off.
+     */
+    private void beginOffscreen(DrawContext context) {
+        context.draw();
+        projection = new Matrix4f(RenderSystem.getProjectionMatrix());
+        sorter = RenderSystem.getVertexSorting();
+        RenderSystem.setProjectionMatrix(new Matrix4f().setOrtho(0, front.textureWidth, front.textureHeight, 0, 1000, 3000), VertexSorter.BY_Z);
+        MatrixStack modelView = RenderSystem.getModelViewStack();
+        modelView.push();
+        modelView.loadIdentity();
+        modelView.translate(0, 0, -2000);
+        RenderSystem.applyModelViewMatrix();
+        RenderSystem.disableScissor();
+        RenderSystem.disableBlend();
+        shaderColor = RenderSystem.getShaderColor().clone();
+        RenderSystem.setShaderColor(1, 1, 1, 1);
+    }
+
+    private void endOffscreen() {
+        RenderSystem.setShaderColor(shaderColor[0], shaderColor[1], shaderColor[2], shaderColor[3]);
+        RenderSystem.enableBlend();
+        RenderSystem.getModelViewStack().pop();
+        RenderSystem.applyModelViewMatrix();
+        RenderSystem.setProjectionMatrix(projection, sorter);
+        MinecraftClient.getInstance().getFramebuffer().beginWrite(true);
+    }
+
+    @Override
+    public void close() {
+        if (front != null) {
+            front.delete();
+            back.delete();
+            front = null;
+            back = null;
+        }
+        revisions.clear();
+    }
+}
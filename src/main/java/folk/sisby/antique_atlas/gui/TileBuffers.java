@@ -0,0 +1,175 @@
+package folk.sisby.antique_atlas.gui;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import folk.sisby.antique_atlas.gui.tiles.SubTile;
+import folk.sisby.antique_atlas.gui.tiles.SubTileQuartet;
+import folk.sisby.antique_atlas.gui.tiles.TileConnectivity;
+import folk.sisby.antique_atlas.gui.tiles.TileRenderIterator;
+import folk.sisby.antique_atlas.gui.tiles.TileSource;
+import folk.sisby.antique_atlas.reloader.TileSprites;
+import folk.sisby.antique_atlas.util.MathUtil;
+import folk.sisby.antique_atlas.util.Rect;
+import folk.sisby.antique_atlas.util.TilePyramid;
+import folk.sisby.antique_atlas.util.TileStore;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retained tile geometry - one vertex buffer per 32x32 tile region at each step, in subtile units.
+ * A region is only rebuilt when its revision changes, so a static map costs one draw call per visible region.
+ * Buffers for regions that go unseen are closed once there are too many.
+ */
+public class TileBuffers implements AutoCloseable {
+    private static final int MAX_BUFFERS = 256;
+    private static final int REGION_SUBTILES = TileStore.REGION_SIZE * 2;
+
+    private static class Entry {
+        private VertexBuffer buffer = null;
+        private long revision = -1;
+        private int lastFrame;
+    }
+
+    private final TileSource tiles;
+    private final TileRenderIterator iterator;
+    private final List<Long2ObjectMap<Entry>> levels = new ArrayList<>();
+    private final Rect regionScope = new Rect();
+    private final Matrix4f modelView = new Matrix4f();
+    private int spriteRevision = -1;
+    private int frame = 0;
+    private int size = 0;
+
+    public TileBuffers(TileSource tiles, TileConnectivity connectivity) {
+        this.tiles = tiles;
+        this.iterator = new TileRenderIterator(tiles, connectivity);
+        for (int i = 0; i <= TilePyramid.LEVELS; i++) {
+            levels.add(new Long2ObjectOpenHashMap<>());
+        }
+    }
+
+    /**
+     * Draws the tiles in an area, relative to the current matrices like {@link TileRenderIterator}'s subtiles.
+     *
+     * @param scope  the chunks to draw, with {@code scope.minX} and {@code scope.minY} at the origin - multiples of the step.
+     * @param pixels the size of a subtile.
+     * @return false if the source doesn't track changes at this step, so the tiles should be drawn directly.
+     */
+    public boolean render(DrawContext context, Rect scope, int step, int pixels) {
+        int level = Integer.numberOfTrailingZeros(step);
+        if (step != 1 << level || level > TilePyramid.LEVELS) return false;
+        int minRegionX = (scope.minX >> level) >> TileStore.REGION_POWER;
+        int minRegionZ = (scope.minY >> level) >> TileStore.REGION_POWER;
+        int maxRegionX = (scope.maxX >> level) >> TileStore.REGION_POWER;
+        int maxRegionZ = (scope.maxY >> level) >> TileStore.REGION_POWER;
+        if (tiles.getRevision(minRegionX, minRegionZ, step) == -1) return false;
+        if (spriteRevision != TileSprites.getInstance().getRevision()) {
+            close();
+            spriteRevision = TileSprites.getInstance().getRevision();
+        }
+        frame++;
+
+        RenderSystem.setShaderTexture(0, TileSprites.ATLAS);
+        Matrix4f matrix = context.getMatrices().peek().getPositionMatrix();
+        Long2ObjectMap<Entry> buffers = levels.get(level);
+        for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++) {
+            for (int regionX = minRegionX; regionX <= maxRegionX; regionX++) {
+                long key = MathUtil.packXZ(regionX, regionZ);
+                Entry entry = buffers.get(key);
+                if (entry == null) {
+                    entry = new Entry();
+                    buffers.put(key, entry);
+                    size++;
+                }
+                entry.lastFrame = frame;
+                long revision = tiles.getRevision(regionX, regionZ, step);
+                if (entry.revision != revision) {
+                    build(entry, regionX, regionZ, step);
+                    entry.revision = revision;
+                }
+                if (entry.buffer == null) continue;
+                int regionChunks = TileStore.REGION_SIZE * step;
+                modelView.set(RenderSystem.getModelViewMatrix()).mul(matrix)
+                    .translate((float) ((regionX * regionChunks - scope.minX) / step * 2 * pixels), (float) ((regionZ * regionChunks - scope.minY) / step * 2 * pixels), 0)
+                    .scale(pixels, pixels, 1);
+                entry.buffer.bind();
+                entry.buffer.draw(modelView, RenderSystem.getProjectionMatrix(), GameRenderer.getPositionTexProgram());
+            }
+        }
+        VertexBuffer.unbind();
+        if (size > MAX_BUFFERS) evict();
+        return true;
+    }
+
+    /**
+     * Stitches a region's subtiles with the same iterator as direct drawing, keeping only those of the region's own tiles.
+     */
+    private void build(Entry entry, int regionX, int regionZ, int step) {
+        int regionChunks = TileStore.REGION_SIZE * step;
+        regionScope.set(new Rect(regionX * regionChunks, regionZ * regionChunks, (regionX + 1) * regionChunks - 1, (regionZ + 1) * regionChunks - 1));
+        iterator.setScope(regionScope);
+        iterator.setStep(step);
+        TileSprites sprites = TileSprites.getInstance();
+        // The shared builder grows as needed - a builder per instance would hold native memory that's never freed.
+        BufferBuilder builder = Tessellator.getInstance().getBuffer();
+        boolean empty = true;
+        for (SubTileQuartet quartet : iterator) {
+            for (SubTile subtile : quartet) {
+                if (subtile.tile == TileStore.EMPTY || subtile.x < 0 || subtile.y < 0 || subtile.x >= REGION_SUBTILES || subtile.y >= REGION_SUBTILES) continue;
+                if (empty) {
+                    builder.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_TEXTURE);
+                    empty = false;
+                }
+                float minU = sprites.getMinU(subtile);
+                float minV = sprites.getMinV(subtile);
+                float maxU = sprites.getMaxU(subtile);
+                float maxV = sprites.getMaxV(subtile);
+                builder.vertex(subtile.x, subtile.y, 0).texture(minU, minV).next();
+                builder.vertex(subtile.x, subtile.y + 1, 0).texture(minU, maxV).next();
+                builder.vertex(subtile.x + 1, subtile.y + 1, 0).texture(maxU, maxV).next();
+                builder.vertex(subtile.x + 1, subtile.y, 0).texture(maxU, minV).next();
+            }
+        }
+        if (empty) {
+            if (entry.buffer != null) {
+                entry.buffer.close();
+                entry.buffer = null;
+            }
+            return;
+        }
+        if (entry.buffer == null) entry.buffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
+        entry.buffer.bind();
+        entry.buffer.upload(builder.end());
+    }
+
+    private void evict() {
+        for (Long2ObjectMap<Entry> buffers : levels) {
+            buffers.values().removeIf(entry -> {
+                if (entry.lastFrame == frame) return false;
+                if (entry.buffer != null) entry.buffer.close();
+                size--;
+                return true;
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Long2ObjectMap<Entry> buffers : levels) {
+            for (Entry entry : buffers.values()) {
+                if (entry.buffer != null) entry.buffer.close();
+            }
+            buffers.clear();
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,127 @@
+package folk.sisby.antique_atlas.reloader;
+
+import folk.sisby.antique_atlas.AntiqueAtlas;
+import folk.sisby.antique_atlas.TileTexture;
+import folk.sisby.antique_atlas.gui.tiles.SubTile;
+import net.fabricmc.fabric.api.resource.IdentifiableResourceReloadListener;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.client.texture.SpriteAtlasTexture;
+import net.minecraft.client.texture.SpriteLoader;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.profiler.Profiler;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Stitches every tile texture into one sprite atlas, so the whole tile layer can be drawn with a single texture.
+ * Sprite bounds are looked up by texture ID once per reload, after {@link TileTextures} has assigned them.
+ */
+public class TileSprites implements IdentifiableResourceReloadListener {
+    private static final TileSprites INSTANCE = new TileSprites();
+    public static final Identifier ID = AntiqueAtlas.id("tile_sprites");
+    public static final Identifier ATLAS = AntiqueAtlas.id("textures/atlas/tiles.png");
+    private static final Identifier SOURCE = AntiqueAtlas.id("tiles");
+
+    public static TileSprites getInstance() {
+        return INSTANCE;
+    }
+
+    private SpriteAtlasTexture atlas = null;
+    /**
+     * Min U, min V, max U and max V of each texture ID's sprite.
+     */
+    private float[] bounds = new float[0];
+    private int revision = 0;
+
+    /**
+     * Changes whenever the atlas is restitched, invalidating anything built from its UVs.
+     */
+    public int getRevision() {
+        return revision;
+    }
+
+    /**
+     * @param u how far across the tile texture, from 0 to 1.
+     */
+    public float getU(short tile, float u) {
+        int i = tile * 4 < bounds.length ? tile * 4 : 0;
+        return bounds[i] + (bounds[i + 2] - bounds[i]) * u;
+    }
+
+    /**
+     * @param v how far down the tile texture, from 0 to 1.
+     */
+    public float getV(short tile, float v) {
+        int i = tile * 4 < bounds.length ? tile * 4 : 0;
+        return bounds[i + 1] + (bounds[i + 3] - bounds[i + 1]) * v;
+    }
+
+    // Tile textures are 4x6 subtiles.
+    public float getMinU(SubTile subtile) {
+        return getU(subtile.tile, subtile.getTextureU() / 4.0F);
+    }
+
+    public float getMaxU(SubTile subtile) {
+        return getU(subtile.tile, (subtile.getTextureU() + 1) / 4.0F);
+    }
+
+    public float getMinV(SubTile subtile) {
+        return getV(subtile.tile, subtile.getTextureV() / 6.0F);
+    }
+
+    public float getMaxV(SubTile subtile) {
+        return getV(subtile.tile, (subtile.getTextureV() + 1) / 6.0F);
+    }
+
+    private static Identifier spriteId(TileTexture texture) {
+        String path = texture.id().getPath();
+        return new Identifier(texture.id().getNamespace(), path.substring("textures/atlas/tile/".length(), path.length() - ".png".length()));
+    }
+
+    @Override
+    public CompletableFuture<Void> reload(Synchronizer synchronizer, ResourceManager manager, Profiler prepareProfiler, Profiler applyProfiler, Executor prepareExecutor, Executor applyExecutor) {
+        if (atlas == null) {
+            atlas = new SpriteAtlasTexture(ATLAS);
+            MinecraftClient.getInstance().getTextureManager().registerTexture(ATLAS, atlas);
+        }
+        return SpriteLoader.fromAtlas(atlas).load(manager, SOURCE, 0, prepareExecutor)
+            .thenCompose(SpriteLoader.StitchResult::whenComplete)
+            .thenCompose(synchronizer::whenPrepared)
+            .thenAcceptAsync(result -> apply(result, applyProfiler), applyExecutor);
+    }
+
+    private void apply(SpriteLoader.StitchResult result, Profiler profiler) {
+        profiler.startTick();
+        profiler.push("upload");
+        atlas.upload(result);
+        TileTextures textures = TileTextures.getInstance();
+        float[] bounds = new float[textures.getIdCount() * 4];
+        for (int i = 0; i < textures.getIdCount(); i++) {
+            Sprite sprite = atlas.getSprite(spriteId(textures.getById(i)));
+            bounds[i * 4] = sprite.getMinU();
+            bounds[i * 4 + 1] = sprite.getMinV();
+            bounds[i * 4 + 2] = sprite.getMaxU();
+            bounds[i * 4 + 3] = sprite.getMaxV();
+        }
+        this.bounds = bounds;
+        revision++;
+        AntiqueAtlas.LOGGER.info("[Antique Atlas] Stitched {} tile textures into a {}x{} atlas.", textures.getIdCount(), result.width(), result.height());
+        profiler.pop();
+        profiler.endTick();
+    }
+
+    @Override
+    public Identifier getFabricId() {
+        return ID;
+    }
+
+    @Override
+    public Collection<Identifier> getFabricDependencies() {
+        return List.of(TileTextures.ID);
+    }
+}
@@ -4,7 +4,13 @@ import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 import folk.sisby.antique_atlas.AntiqueAtlas;
 import folk.sisby.antique_atlas.TileTexture;
+import folk.sisby.antique_atlas.gui.tiles.ConnectivityMatrix;
+import folk.sisby.antique_atlas.gui.tiles.TileConnectivity;
 import folk.sisby.antique_atlas.util.CodecUtil;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.fabricmc.fabric.api.resource.IdentifiableResourceReloadListener;
 import net.minecraft.resource.Resource;
 import net.minecraft.resource.ResourceManager;
@@ -16,6 +22,7 @@ import net.minecraft.util.dynamic.Codecs;
 import net.minecraft.util.profiler.Profiler;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -24,7 +31,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-public class TileTextures extends SinglePreparationResourceReloader<Map<Identifier, TileTextures.TileTextureMeta>> implements IdentifiableResourceReloadListener {
+public class TileTextures extends SinglePreparationResourceReloader<Map<Identifier, TileTextures.TileTextureMeta>> implements IdentifiableResourceReloadListener, TileConnectivity {
     private static final TileTextures INSTANCE = new TileTextures();
     public static final Identifier ID = AntiqueAtlas.id("tile_textures");
 
@@ -33,11 +40,92 @@ public class TileTextures extends SinglePreparationResourceReloader<Map<Identifi
     }
 
     private final Map<Identifier, TileTexture> textures = new HashMap<>();
+    private final List<TileTexture> texturesById = new ArrayList<>();
+    private final Reference2IntMap<TileTexture> textureIds = new Reference2IntOpenHashMap<>();
+    private short[] previousIds = new short[0];
+    private ConnectivityMatrix connectivity;
+
+    public TileTextures() {
+        clearIds();
+        compileConnectivity();
+    }
 
     public Map<Identifier, TileTexture> getTextures() {
         return textures;
     }
 
+    /**
+     * Dense ID for a texture, assigned in identifier order on reload - stable as long as the loaded textures don't change.
+     * Unknown textures (e.g. from before a reload) map to the default texture.
+     */
+    public short getId(TileTexture texture) {
+        return (short) textureIds.getInt(texture);
+    }
+
+    public TileTexture getById(int id) {
+        return texturesById.get(id);
+    }
+
+    public int getIdCount() {
+        return texturesById.size();
+    }
+
+    @Override
+    public boolean tiles(short tile, short to) {
+        return connectivity.tiles(tile, to);
+    }
+
+    @Override
+    public boolean tilesHorizontally(short tile, short to) {
+        return connectivity.tilesHorizontally(tile, to);
+    }
+
+    @Override
+    public boolean tilesVertically(short tile, short to) {
+        return connectivity.tilesVertically(tile, to);
+    }
+
+    /**
+     * Bakes the textures' tiling sets (and inner borders) into bit matrices by ID, as stitching tests them several times per tile per frame.
+     */
+    private void compileConnectivity() {
+        connectivity = ConnectivityMatrix.of(new TileConnectivity() {
+            @Override
+            public boolean tiles(short tile, short to) {
+                return getById(tile).tiles(getById(to));
+            }
+
+            @Override
+            public boolean tilesHorizontally(short tile, short to) {
+                return getById(tile).tilesHorizontally(getById(to));
+            }
+
+            @Override
+            public boolean tilesVertically(short tile, short to) {
+                return getById(tile).tilesVertically(getById(to));
+            }
+        }, texturesById.size());
+    }
+
+    /**
+     * @return the current ID of the texture that had the given ID before the last reload, or the default texture if it's gone.
+     */
+    public short remapId(short previousId) {
+        return previousId >= 0 && previousId < previousIds.length ? previousIds[previousId] : 0;
+    }
+
+    private void clearIds() {
+        texturesById.clear();
+        textureIds.clear();
+        textureIds.defaultReturnValue(0);
+        assignId(TileTexture.DEFAULT);
+    }
+
+    private void assignId(TileTexture texture) {
+        textureIds.put(texture, texturesById.size());
+        texturesById.add(texture);
+    }
+
     @Override
     protected Map<Identifier, TileTextures.TileTextureMeta> prepare(ResourceManager manager, Profiler profiler) {
         Map<Identifier, TileTextureMeta> textureMeta = new HashMap<>();
@@ -104,6 +192,24 @@ public class TileTextures extends SinglePreparationResourceReloader<Map<Identifi
 
         // Build Textures
         textureBuilders.forEach((id, builder) -> builder.build(textures));
+
+        // Assign IDs
+        List<Identifier> previousTextures = texturesById.stream().map(TileTexture::id).toList();
+        clearIds();
+        textures.keySet().stream().sorted().forEach(id -> {
+            if (texturesById.size() > Short.MAX_VALUE) {
+                AntiqueAtlas.LOGGER.error("[Antique Atlas] Too many tile textures! {} will be drawn as the default texture.", id);
+            } else {
+                assignId(textures.get(id));
+            }
+        });
+        Object2IntMap<Identifier> currentIds = new Object2IntOpenHashMap<>();
+        texturesById.forEach(texture -> currentIds.put(texture.id(), textureIds.getInt(texture)));
+        previousIds = new short[previousTextures.size()];
+        for (int i = 0; i < previousIds.length; i++) {
+            previousIds[i] = (short) currentIds.getInt(previousTextures.get(i));
+        }
+        compileConnectivity();
     }
 
     @Override
@@ -0,0 +1,37 @@
+package folk.sisby.antique_atlas.reloader;
+
+import folk.sisby.antique_atlas.AntiqueAtlas;
+import folk.sisby.antique_atlas.WorldAtlasData;
+import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Re-textures loaded atlas data once textures and tile providers have reloaded, without re-tiling any terrain.
+ */
+public class WorldRetexturer implements SimpleSynchronousResourceReloadListener {
+    private static final WorldRetexturer INSTANCE = new WorldRetexturer();
+    public static final Identifier ID = AntiqueAtlas.id("world_retexturer");
+
+    public static WorldRetexturer getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void reload(ResourceManager manager) {
+        WorldAtlasData.WORLDS.values().forEach(WorldAtlasData::retexture);
+    }
+
+    @Override
+    public Identifier getFabricId() {
+        return ID;
+    }
+
+    @Override
+    public Collection<Identifier> getFabricDependencies() {
+        return List.of(TileTextures.ID, BiomeTileProviders.ID, StructureTileProviders.ID);
+    }
+}
@@ -27,6 +27,13 @@ public class DrawBatcher implements AutoCloseable {
         this.textureHeight = textureHeight;
     }
 
+    /**
+     * For batches whose UVs are already normalized, e.g. sprites in an atlas - use with {@link #addUV}.
+     */
+    public DrawBatcher(DrawContext context, Identifier texture) {
+        this(context, texture, 1, 1);
+    }
+
     public void add(int x, int y, int width, int height,  int u, int v, int regionWidth, int regionHeight) {
         this.innerAdd(x, x + width, y, y + height, 0,
             (u + 0.0F) / textureWidth,
@@ -36,6 +43,10 @@ public class DrawBatcher implements AutoCloseable {
         );
     }
 
+    public void addUV(int x, int y, int width, int height, float u1, float v1, float u2, float v2) {
+        this.innerAdd(x, x + width, y, y + height, 0, u1, u2, v1, v2);
+    }
+
     private void innerAdd(int x1, int x2, int y1, int y2, int z, float u1, float u2, float v1, float v2) {
         bufferBuilder.vertex(matrix4f, x1, y1, z).texture(u1, v1).next();
         bufferBuilder.vertex(matrix4f, x1, y2, z).texture(u1, v2).next();
@@ -1,10 +0,0 @@
-package folk.sisby.antique_atlas.util;
-
-public class MathUtil {
-    /**
-     * Returns the nearest number to a multiple of a given number.
-     */
-    public static int roundToBase(int a, int base) {
-        return a - a % base;
-    }
-}